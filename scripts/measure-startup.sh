@@ -0,0 +1,71 @@
+#!/usr/bin/env bash
+# Воспроизводимый замер времени запуска LANRadar (Linux, GNU date).
+#
+# Использование:
+#   scripts/measure-startup.sh [-n повторов] [--gui] <команда запуска...>
+# Примеры:
+#   scripts/measure-startup.sh -n 10 java -cp target/LANRadar-shaded.jar lanradar.Launcher
+#   scripts/measure-startup.sh -n 10 target/runtime-image/lanradar
+#   scripts/measure-startup.sh -n 10 --gui target/runtime-image/lanradar
+#
+# Без --gui к команде добавляется разовое консольное сканирование loopback
+# (--headless --once --cidr 127.0.0.0/30): отметки main, first-event и first-scan
+# (последняя включает ожидание тайм-аутов SNMP). С --gui (нужен дисплей) замеряется время
+# до первого кадра окна (отметка window), после чего процесс завершается.
+#
+# Каждый запуск получает собственные снимок устройств и журнал истории, то есть стартует «холодным»;
+# отметки отсчитываются от момента запуска команды (свойство lanradar.startup.origin) и передаются
+# через JAVA_TOOL_OPTIONS. Выводятся медиана и минимум по каждой отметке в миллисекундах.
+
+set -euo pipefail
+
+runs=5
+gui=false
+while [[ $# -gt 0 ]]; do
+    case "$1" in
+        -n) runs="$2"; shift 2 ;;
+        --gui) gui=true; shift ;;
+        *) break ;;
+    esac
+done
+if [[ $# -eq 0 ]]; then
+    sed -n '2,18p' "$0" | sed 's/^# \{0,1\}//'
+    exit 2
+fi
+
+results=$(mktemp)
+trap 'rm -f "$results"' EXIT
+
+for ((i = 1; i <= runs; i++)); do
+    work=$(mktemp -d)
+    origin=$(date +%s%3N)
+    opts="-Dlanradar.startup.trace=true -Dlanradar.startup.origin=$origin"
+    opts="$opts -Dlanradar.snapshot.file=$work/devices.snapshot -Dlanradar.history.dir=$work/history"
+    if $gui; then
+        JAVA_TOOL_OPTIONS="$opts" "$@" >/dev/null 2>"$work/startup.log" &
+        pid=$!
+        for ((t = 0; t < 600; t++)); do
+            grep -q '^startup: window' "$work/startup.log" && break
+            kill -0 "$pid" 2>/dev/null || break
+            sleep 0.1
+        done
+        kill "$pid" 2>/dev/null || true
+        wait "$pid" 2>/dev/null || true
+    else
+        JAVA_TOOL_OPTIONS="$opts" "$@" --headless --once --cidr 127.0.0.0/30 --out /dev/null \
+            >/dev/null 2>"$work/startup.log" || true
+    fi
+    grep '^startup:' "$work/startup.log" | awk '{print $2, $3}' >>"$results"
+    rm -rf "$work"
+done
+
+awk '{ v[$1] = v[$1] " " $2; if (!($1 in order)) { order[$1] = ++n; names[n] = $1 } }
+     END {
+         printf "%-12s %8s %8s %5s\n", "phase", "median", "min", "runs"
+         for (k = 1; k <= n; k++) {
+             c = split(substr(v[names[k]], 2), a, " ")
+             for (i = 1; i <= c; i++) for (j = i + 1; j <= c; j++) if (a[j] < a[i]) { t = a[i]; a[i] = a[j]; a[j] = t }
+             m = c % 2 ? a[(c + 1) / 2] : (a[c / 2] + a[c / 2 + 1]) / 2
+             printf "%-12s %8d %8d %5d\n", names[k], m, a[1], c
+         }
+     }' "$results"
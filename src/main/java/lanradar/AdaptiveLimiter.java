@@ -0,0 +1,213 @@
+package lanradar;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Адаптивный ограничитель числа одновременных проверок (AIMD с учётом градиента задержки).
+ * <p>
+ * До первого снижения предел растёт на единицу за каждую проверку (медленный старт), затем — пока
+ * задержка успешных ответов близка к минимальной наблюдаемой — примерно на единицу за время одного RTT.
+ * Когда сглаженная задержка превышает базовую более чем в {@code tolerance} раз либо сообщается о потере
+ * ответа или сетевой ошибке, предел умножается на {@code backoff}, но не чаще одного раза за RTT.
+ * Молчание несуществующего хоста передаётся как {@link Outcome#IGNORED} и на предел не влияет: оно не говорит
+ * ни о перегрузке, ни о запасе пропускной способности, поэтому в разреженной подсети предел меняется только
+ * по ответившим адресам.
+ */
+public class AdaptiveLimiter {
+
+    /**
+     * Результат проверки, переданный в {@link #release(long, Outcome)}.
+     */
+    public enum Outcome {
+        /** Получен ответ; задержка учитывается. */
+        SUCCESS,
+        /** Живой хост не ответил вовремя (ответ пришёл только на повторную попытку). */
+        TIMEOUT,
+        /** Сетевая ошибка при отправке. */
+        ERROR,
+        /** Хост не ответил или проверка отменена; место освобождается, предел не меняется. */
+        IGNORED
+    }
+
+    private static final double RTT_ALPHA = 0.1;
+    private static final double BASELINE_DRIFT = 0.001;
+    private static final long MIN_DECREASE_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final long RTT_SLACK_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final double backoff;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+
+    private double limit;
+    private int inFlight;
+    private double smoothedRttNanos;
+    private double baselineRttNanos;
+    private long lastDecreaseNanos;
+    private boolean slowStart = true;
+
+    /**
+     * Создаёт ограничитель.
+     *
+     * @param initialLimit Начальный предел.
+     * @param minLimit     Минимальный предел.
+     * @param maxLimit     Максимальный предел.
+     * @param tolerance    Допустимое отношение сглаженной задержки к базовой (например, 2.0).
+     * @param backoff      Множитель уменьшения предела (например, 0.8).
+     */
+    public AdaptiveLimiter(int initialLimit, int minLimit, int maxLimit, double tolerance, double backoff) {
+        if (minLimit < 1 || maxLimit < minLimit || tolerance <= 1.0 || backoff <= 0 || backoff >= 1) {
+            throw new IllegalArgumentException("Некорректные параметры ограничителя");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.backoff = backoff;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /**
+     * Ожидает свободного места под проверку.
+     *
+     * @throws InterruptedException Если поток прерван во время ожидания.
+     */
+    public void acquire() throws InterruptedException {
+        lock.lock();
+        try {
+            while (inFlight >= (int) limit) {
+                available.await();
+            }
+            inFlight++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Освобождает место и учитывает результат проверки.
+     *
+     * @param rttNanos Длительность проверки в наносекундах.
+     * @param outcome  Результат проверки.
+     */
+    public void release(long rttNanos, Outcome outcome) {
+        lock.lock();
+        try {
+            inFlight--;
+            long now = System.nanoTime();
+            switch (outcome) {
+                case SUCCESS:
+                    onSuccess(rttNanos, now);
+                    break;
+                case TIMEOUT:
+                case ERROR:
+                    decrease(now);
+                    break;
+                default:
+                    break;
+            }
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void onSuccess(long rttNanos, long now) {
+        if (smoothedRttNanos == 0) {
+            smoothedRttNanos = rttNanos;
+            baselineRttNanos = rttNanos;
+        } else {
+            smoothedRttNanos += RTT_ALPHA * (rttNanos - smoothedRttNanos);
+            // Базовая задержка — медленно «всплывающий» минимум, чтобы пережить смену маршрута
+            baselineRttNanos = Math.min(rttNanos, baselineRttNanos + BASELINE_DRIFT * (smoothedRttNanos - baselineRttNanos));
+        }
+        if (smoothedRttNanos > tolerance * baselineRttNanos + RTT_SLACK_NANOS) {
+            decrease(now);
+        } else {
+            increase();
+        }
+    }
+
+    private void increase() {
+        limit = Math.min(maxLimit, limit + (slowStart ? 1.0 : 1.0 / limit));
+    }
+
+    private void decrease(long now) {
+        long interval = Math.max((long) smoothedRttNanos, MIN_DECREASE_INTERVAL_NANOS);
+        if (now - lastDecreaseNanos >= interval) {
+            limit = Math.max(minLimit, limit * backoff);
+            lastDecreaseNanos = now;
+            slowStart = false;
+        }
+    }
+
+    /**
+     * Возвращает текущий предел одновременных проверок.
+     *
+     * @return Предел.
+     */
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Возвращает число выполняющихся проверок.
+     *
+     * @return Число проверок.
+     */
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Возвращает сглаженную задержку успешных проверок.
+     *
+     * @return Задержка в миллисекундах или 0, если ответов ещё не было.
+     */
+    public double getRttMillis() {
+        lock.lock();
+        try {
+            return smoothedRttNanos / 1_000_000.0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Возвращает базовую (минимальную) задержку успешных проверок.
+     *
+     * @return Задержка в миллисекундах или 0, если ответов ещё не было.
+     */
+    public double getBaselineRttMillis() {
+        lock.lock();
+        try {
+            return baselineRttNanos / 1_000_000.0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Возвращает строковое представление состояния ограничителя.
+     *
+     * @return Строка с пределом, числом проверок и задержкой.
+     */
+    @Override
+    public String toString() {
+        return String.format("AdaptiveLimiter{limit=%d, inFlight=%d, rtt=%.1fms, baseline=%.1fms}",
+                getLimit(), getInFlight(), getRttMillis(), getBaselineRttMillis());
+    }
+}
@@ -0,0 +1,270 @@
+package lanradar;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Гонка нескольких способов проверки доступности: все способы запускаются одновременно на виртуальных
+ * потоках, первый положительный ответ завершает проверку, остальные прерываются. По каждому способу
+ * ведётся статистика: число завершённых запусков, положительных ответов, побед в гонке, среднее время ответа
+ * и число запусков, прерванных гонкой до ответа («не решено»). Доля положительных ответов считается только
+ * по завершённым запускам; медленные способы чаще остаются нерешёнными, поэтому её стоит читать вместе
+ * с {@link Stats#getUndecided()}.
+ * <p>
+ * Общий экземпляр собирается из свойств {@code lanradar.liveness.probes} (по умолчанию «icmp,tcp,udp»),
+ * {@code lanradar.liveness.tcpPorts} (по умолчанию «445,139,80,22») и {@code lanradar.liveness.udpPort}
+ * (по умолчанию 33434).
+ */
+public final class CompositeLivenessProbe implements LivenessProbe {
+
+    private static final Logger logger = LoggerFactory.getLogger(CompositeLivenessProbe.class);
+
+    private static final String DEFAULT_PROBES = "icmp,tcp,udp";
+    private static final String DEFAULT_TCP_PORTS = "445,139,80,22";
+    private static final int DEFAULT_UDP_PORT = 33434;
+
+    private static final ExecutorService EXECUTOR =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("liveness-", 0).factory());
+
+    /**
+     * Статистика одного способа проверки.
+     */
+    public static final class Stats {
+        private final LivenessProbe probe;
+        private final AtomicLong attempts = new AtomicLong();
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong undecided = new AtomicLong();
+        private final AtomicLong wins = new AtomicLong();
+        private final AtomicLong hitNanos = new AtomicLong();
+
+        Stats(LivenessProbe probe) {
+            this.probe = probe;
+        }
+
+        /**
+         * Возвращает название способа.
+         *
+         * @return Название.
+         */
+        public String getName() {
+            return probe.getName();
+        }
+
+        /**
+         * Возвращает число завершённых запусков (без прерванных гонкой).
+         *
+         * @return Число запусков.
+         */
+        public long getAttempts() {
+            return attempts.get();
+        }
+
+        /**
+         * Возвращает число положительных ответов.
+         *
+         * @return Число ответов.
+         */
+        public long getHits() {
+            return hits.get();
+        }
+
+        /**
+         * Возвращает число запусков, прерванных гонкой до ответа способа.
+         *
+         * @return Число нерешённых запусков.
+         */
+        public long getUndecided() {
+            return undecided.get();
+        }
+
+        /**
+         * Возвращает число гонок, в которых способ ответил первым.
+         *
+         * @return Число побед.
+         */
+        public long getWins() {
+            return wins.get();
+        }
+
+        /**
+         * Возвращает долю положительных ответов среди завершённых запусков (без нерешённых).
+         *
+         * @return Значение от 0 до 1.
+         */
+        public double getHitRate() {
+            long count = attempts.get();
+            return count == 0 ? 0 : (double) hits.get() / count;
+        }
+
+        /**
+         * Возвращает среднее время положительного ответа.
+         *
+         * @return Время в миллисекундах или 0.
+         */
+        public double getAverageHitMillis() {
+            long count = hits.get();
+            return count == 0 ? 0 : hitNanos.get() / 1_000_000.0 / count;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s{attempts=%d, hits=%d, undecided=%d, wins=%d, hitRate=%.2f, avg=%.1fms}",
+                    getName(), getAttempts(), getHits(), getUndecided(), getWins(), getHitRate(),
+                    getAverageHitMillis());
+        }
+    }
+
+    private final List<Stats> stats = new ArrayList<>();
+
+    /**
+     * Создаёт гонку из заданных способов.
+     *
+     * @param probes Способы проверки (хотя бы один).
+     */
+    public CompositeLivenessProbe(List<? extends LivenessProbe> probes) {
+        if (probes.isEmpty()) {
+            throw new IllegalArgumentException("Не задано ни одного способа проверки доступности");
+        }
+        for (LivenessProbe probe : probes) {
+            stats.add(new Stats(probe));
+        }
+    }
+
+    /**
+     * Ленивая инициализация общей гонки.
+     */
+    private static final class Holder {
+        static final CompositeLivenessProbe INSTANCE = fromProperties();
+    }
+
+    /**
+     * Возвращает общую для приложения гонку способов проверки.
+     *
+     * @return Гонка.
+     */
+    public static CompositeLivenessProbe getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    private static CompositeLivenessProbe fromProperties() {
+        List<LivenessProbe> probes = new ArrayList<>();
+        for (String name : System.getProperty("lanradar.liveness.probes", DEFAULT_PROBES).split(",")) {
+            switch (name.trim()) {
+                case "icmp" -> probes.add(new IsReachableProbe());
+                case "tcp" -> {
+                    for (String port : System.getProperty("lanradar.liveness.tcpPorts", DEFAULT_TCP_PORTS).split(",")) {
+                        probes.add(new TcpConnectProbe(Integer.parseInt(port.trim())));
+                    }
+                }
+                case "udp" -> probes.add(new UdpNudgeProbe(Integer.getInteger("lanradar.liveness.udpPort", DEFAULT_UDP_PORT)));
+                case "" -> { }
+                default -> throw new IllegalArgumentException("Неизвестный способ проверки доступности: " + name);
+            }
+        }
+        return new CompositeLivenessProbe(probes);
+    }
+
+    @Override
+    public String getName() {
+        StringBuilder name = new StringBuilder();
+        for (Stats s : stats) {
+            name.append(name.length() == 0 ? "" : "|").append(s.getName());
+        }
+        return name.toString();
+    }
+
+    @Override
+    public boolean isAlive(InetAddress address, int timeoutMillis) throws InterruptedException {
+        if (stats.size() == 1) {
+            Stats s = stats.get(0);
+            try {
+                return run(s, new AtomicBoolean(), address, timeoutMillis);
+            } catch (InterruptedException e) {
+                s.undecided.incrementAndGet();
+                throw e;
+            }
+        }
+        ExecutorCompletionService<Stats> race = new ExecutorCompletionService<>(EXECUTOR);
+        List<Future<Stats>> futures = new ArrayList<>(stats.size());
+        List<AtomicBoolean> settled = new ArrayList<>(stats.size());
+        try {
+            for (Stats s : stats) {
+                AtomicBoolean done = new AtomicBoolean();
+                settled.add(done);
+                futures.add(race.submit(() -> run(s, done, address, timeoutMillis) ? s : null));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                Stats winner;
+                try {
+                    winner = race.take().get();
+                } catch (ExecutionException e) {
+                    logger.error("Ошибка проверки доступности ({}): {}", address.getHostAddress(),
+                            e.getCause().getMessage(), e.getCause());
+                    continue;
+                }
+                if (winner != null) {
+                    winner.wins.incrementAndGet();
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            // Запуски, отменённые до ответа (в том числе не успевшие начаться), учитываются как нерешённые
+            for (int i = 0; i < futures.size(); i++) {
+                if (futures.get(i).cancel(true) && settled.get(i).compareAndSet(false, true)) {
+                    stats.get(i).undecided.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * Выполняет один способ и учитывает ответ, если запуск ещё не учтён гонкой как нерешённый.
+     * Прерывание (исключение или отрицательный ответ при установленном флаге) не учитывается здесь:
+     * его учитывает вызывающий код.
+     *
+     * @param settled Флаг учёта запуска, общий с гонкой, чтобы запуск попал в статистику ровно один раз.
+     */
+    private static boolean run(Stats s, AtomicBoolean settled, InetAddress address, int timeoutMillis)
+            throws InterruptedException {
+        long started = System.nanoTime();
+        boolean alive = s.probe.isAlive(address, timeoutMillis);
+        if (!alive && Thread.currentThread().isInterrupted()) {
+            throw new InterruptedException();
+        }
+        if (!settled.compareAndSet(false, true)) {
+            return alive;
+        }
+        s.attempts.incrementAndGet();
+        if (alive) {
+            s.hits.incrementAndGet();
+            s.hitNanos.addAndGet(System.nanoTime() - started);
+        }
+        return alive;
+    }
+
+    /**
+     * Возвращает статистику способов проверки.
+     *
+     * @return Статистика в порядке способов.
+     */
+    public List<Stats> getStats() {
+        return List.copyOf(stats);
+    }
+
+    @Override
+    public String toString() {
+        return "CompositeLivenessProbe" + stats;
+    }
+}
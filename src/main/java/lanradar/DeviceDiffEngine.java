@@ -0,0 +1,402 @@
+package lanradar;
+
+import lanradar.NetworkDevice.DeviceStatus;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Сопоставляет результаты сканирования с известными устройствами и сообщает только об изменениях.
+ * <p>
+ * Движок хранит по одному экземпляру {@link NetworkDevice} на IP-адрес и изменяет его на месте;
+ * результаты проверок лишь сравниваются с ним. Каждое сканирование оформляется как {@link Cycle}:
+ * устройства из области цикла, не ответившие до его завершения, помечаются потерянными. Здесь же
+ * реализована смена статусов NEW/CHANGED/LOST. Класс не зависит от JavaFX.
+ */
+public final class DeviceDiffEngine {
+
+    /**
+     * Тип изменения.
+     */
+    public enum EventType {
+        /** Устройство появилось впервые или снова после потери. */
+        APPEARED,
+        /** Устройство перестало отвечать. */
+        DISAPPEARED,
+        /** Изменился MAC-адрес. */
+        MAC_CHANGED,
+        /** Изменилось DNS-имя. */
+        DNS_CHANGED,
+        /** Изменилась доступность SNMP. */
+        SNMP_CHANGED,
+        /** Новое устройство перестало считаться новым. */
+        SETTLED,
+        /** Изменился набор открытых портов. */
+        PORTS_CHANGED
+    }
+
+    /**
+     * Изменение одного устройства.
+     */
+    public static final class Event {
+        private final EventType type;
+        private final NetworkDevice device;
+        private final Object oldValue;
+        private final Object newValue;
+
+        Event(EventType type, NetworkDevice device, Object oldValue, Object newValue) {
+            this.type = type;
+            this.device = device;
+            this.oldValue = oldValue;
+            this.newValue = newValue;
+        }
+
+        /**
+         * Возвращает тип изменения.
+         *
+         * @return Тип.
+         */
+        public EventType getType() {
+            return type;
+        }
+
+        /**
+         * Возвращает устройство (экземпляр, хранимый движком).
+         *
+         * @return Устройство.
+         */
+        public NetworkDevice getDevice() {
+            return device;
+        }
+
+        /**
+         * Возвращает прежнее значение изменённого поля.
+         *
+         * @return Значение или null.
+         */
+        public Object getOldValue() {
+            return oldValue;
+        }
+
+        /**
+         * Возвращает новое значение изменённого поля.
+         *
+         * @return Значение или null.
+         */
+        public Object getNewValue() {
+            return newValue;
+        }
+
+        @Override
+        public String toString() {
+            return type + " " + device.getIpAddress() + ": " + oldValue + " -> " + newValue;
+        }
+    }
+
+    /**
+     * Один проход сканирования. Циклы полного и частичного сканирования могут выполняться одновременно.
+     */
+    public final class Cycle {
+        private final Set<Integer> scope;
+        private final Set<Integer> seen = new HashSet<>();
+        private final boolean full;
+        private final long generation;
+
+        private Cycle(Set<Integer> scope, boolean full, long generation) {
+            this.scope = scope;
+            this.full = full;
+            this.generation = generation;
+        }
+
+        /**
+         * Учитывает ответившее устройство. DNS-имя и флаг SNMP считаются пропавшими только
+         * у дозаполненного устройства, определившего эти поля ({@link NetworkDevice#isKnown(int)}).
+         *
+         * @param probe Результат проверки.
+         */
+        public void accept(NetworkDevice probe) {
+            synchronized (DeviceDiffEngine.this) {
+                if (generation != DeviceDiffEngine.this.generation) {
+                    return;
+                }
+                seen.add(probe.getIp());
+                merge(probe, full && baseline);
+            }
+        }
+
+        /**
+         * Учитывает дозаполнение уже переданного устройства (DNS-имя, флаг SNMP). Статус и MAC-адрес
+         * при этом не меняются, поэтому запоздавший результат не «воскрешает» потерянное устройство.
+         *
+         * @param probe Результат проверки.
+         */
+        public void update(NetworkDevice probe) {
+            synchronized (DeviceDiffEngine.this) {
+                if (generation != DeviceDiffEngine.this.generation) {
+                    return;
+                }
+                NetworkDevice device = devices.get(probe.getIp());
+                if (device != null) {
+                    mergeEnrichment(probe, device);
+                }
+            }
+        }
+
+        /**
+         * Завершает цикл: устройства области цикла, не ответившие в нём, помечаются потерянными.
+         * После полного цикла новые устройства, пережившие два сканирования, перестают считаться новыми.
+         */
+        public void end() {
+            synchronized (DeviceDiffEngine.this) {
+                if (generation != DeviceDiffEngine.this.generation) {
+                    return;
+                }
+                for (Integer ip : scope != null ? scope : devices.keySet()) {
+                    NetworkDevice device = devices.get(ip);
+                    if (device != null && !seen.contains(ip) && device.getStatus() != DeviceStatus.LOST) {
+                        DeviceStatus old = device.getStatus();
+                        device.setStatus(DeviceStatus.LOST);
+                        device.markChanged(NetworkDevice.CHANGED_STATUS);
+                        emit(EventType.DISAPPEARED, device, old, DeviceStatus.LOST);
+                    }
+                }
+                if (!full) {
+                    return;
+                }
+                if (baseline) {
+                    baseline = false;
+                    return;
+                }
+                for (NetworkDevice device : devices.values()) {
+                    if (device.getStatus() == DeviceStatus.NEW) {
+                        device.setScansAsNew(device.getScansAsNew() + 1);
+                        if (device.getScansAsNew() >= 2) {
+                            device.setStatus(DeviceStatus.NORMAL);
+                            device.markChanged(NetworkDevice.CHANGED_STATUS);
+                            emit(EventType.SETTLED, device, DeviceStatus.NEW, DeviceStatus.NORMAL);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private final Map<Integer, NetworkDevice> devices = new HashMap<>();
+    private final Consumer<Event> listener;
+    private boolean baseline = true;
+    private long generation;
+
+    /**
+     * Создаёт движок.
+     *
+     * @param listener Получатель изменений. Вызывается синхронно под блокировкой движка,
+     *                 поэтому должен работать быстро (например, только ставить обновление в очередь).
+     */
+    public DeviceDiffEngine(Consumer<Event> listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Начинает полный цикл: его область — все известные устройства. Устройства, найденные в первом
+     * полном цикле, считаются исходным состоянием и не отмечаются как новые.
+     *
+     * @return Цикл.
+     */
+    public synchronized Cycle beginFullCycle() {
+        return new Cycle(null, true, generation);
+    }
+
+    /**
+     * Начинает частичный цикл по заданным адресам.
+     *
+     * @param ipAddresses Проверяемые адреса.
+     * @return Цикл.
+     */
+    public synchronized Cycle beginPartialCycle(Collection<String> ipAddresses) {
+        Set<Integer> scope = new HashSet<>();
+        for (String ipAddress : ipAddresses) {
+            long ip = UtilityNetwork.parseIpv4(ipAddress);
+            if (ip >= 0) {
+                scope.add((int) ip);
+            }
+        }
+        return new Cycle(scope, false, generation);
+    }
+
+    /**
+     * Забывает все устройства. Незавершённые циклы после этого игнорируются.
+     */
+    public synchronized void clear() {
+        devices.clear();
+        baseline = true;
+        generation++;
+    }
+
+    /**
+     * Загружает ранее известные устройства (например, из {@link DeviceSnapshot}) вместо пустого исходного
+     * состояния: первый полный цикл сразу сравнивается с ними, а новые устройства отмечаются как новые.
+     * Событий при этом не создаётся.
+     *
+     * @param known Устройства; движок хранит их копии.
+     */
+    public synchronized void seed(Collection<NetworkDevice> known) {
+        for (NetworkDevice probe : known) {
+            NetworkDevice device = new NetworkDevice(probe.getIp());
+            copy(probe, device);
+            device.setStatus(probe.getStatus());
+            devices.put(device.getIp(), device);
+        }
+        if (!devices.isEmpty()) {
+            baseline = false;
+        }
+    }
+
+    /**
+     * Возвращает согласованные копии известных устройств, которые можно читать без блокировки движка.
+     *
+     * @return Копии устройств в произвольном порядке.
+     */
+    public synchronized List<NetworkDevice> snapshot() {
+        List<NetworkDevice> result = new ArrayList<>(devices.size());
+        for (NetworkDevice device : devices.values()) {
+            NetworkDevice copy = new NetworkDevice(device.getIp());
+            copy(device, copy);
+            copy.setStatus(device.getStatus());
+            result.add(copy);
+        }
+        return result;
+    }
+
+    /**
+     * Возвращает копию списка известных устройств.
+     *
+     * @return Устройства в произвольном порядке.
+     */
+    public synchronized List<NetworkDevice> getDevices() {
+        return new ArrayList<>(devices.values());
+    }
+
+    /**
+     * Возвращает и сбрасывает маску полей устройства, изменившихся с прошлого вызова
+     * (биты {@code NetworkDevice.CHANGED_*}). Маска пополняется под блокировкой движка, поэтому
+     * читать её нужно через этот метод.
+     *
+     * @param device Устройство, хранимое движком.
+     * @return Маска изменений.
+     */
+    public synchronized int takeChangedFields(NetworkDevice device) {
+        return device.clearChangedFields();
+    }
+
+    /**
+     * Возвращает известный MAC-адрес устройства.
+     *
+     * @param ipAddress IPv4-адрес в виде int.
+     * @return MAC-адрес или {@link NetworkDevice#NO_MAC}, если устройство неизвестно или его MAC не определён.
+     */
+    public synchronized long getMac(int ipAddress) {
+        NetworkDevice device = devices.get(ipAddress);
+        return device == null ? NetworkDevice.NO_MAC : device.getMac();
+    }
+
+    /**
+     * Возвращает копию списка известных IP-адресов.
+     *
+     * @return Адреса в произвольном порядке.
+     */
+    public synchronized List<String> getIpAddresses() {
+        List<String> result = new ArrayList<>(devices.size());
+        for (NetworkDevice device : devices.values()) {
+            result.add(device.getIpAddress());
+        }
+        return result;
+    }
+
+    private void merge(NetworkDevice probe, boolean baselineScan) {
+        int ip = probe.getIp();
+        NetworkDevice device = devices.get(ip);
+        if (device == null) {
+            device = new NetworkDevice(ip);
+            copy(probe, device);
+            if (baselineScan) {
+                device.setStatus(DeviceStatus.NORMAL);
+            } else {
+                device.setStatus(DeviceStatus.NEW);
+                device.setScansAsNew(0);
+            }
+            devices.put(ip, device);
+            emit(EventType.APPEARED, device, null, device.getStatus());
+            return;
+        }
+        if (device.getMac() != probe.getMac()) {
+            String old = device.getMacAddress();
+            device.setMac(probe.getMac());
+            device.setManufacturerName(probe.getManufacturerName());
+            device.setStatus(DeviceStatus.CHANGED);
+            device.markChanged(NetworkDevice.CHANGED_MAC | NetworkDevice.CHANGED_STATUS);
+            emit(EventType.MAC_CHANGED, device, old, probe.getMacAddress());
+        } else if (device.getStatus() == DeviceStatus.LOST) {
+            device.setStatus(DeviceStatus.NEW);
+            device.setScansAsNew(0);
+            device.markChanged(NetworkDevice.CHANGED_STATUS);
+            emit(EventType.APPEARED, device, DeviceStatus.LOST, DeviceStatus.NEW);
+        }
+        mergeEnrichment(probe, device);
+    }
+
+    private void mergeEnrichment(NetworkDevice probe, NetworkDevice device) {
+        // Пустое значение неопределённого поля означает «не известно», а не «пропало»
+        if ((probe.isKnown(NetworkDevice.CHANGED_DNS) || probe.getDNSname() != null)
+                && !Objects.equals(device.getDNSname(), probe.getDNSname())) {
+            String old = device.getDNSname();
+            device.setDNSname(probe.getDNSname());
+            device.markChanged(NetworkDevice.CHANGED_DNS);
+            emit(EventType.DNS_CHANGED, device, old, probe.getDNSname());
+        }
+        if ((probe.isKnown(NetworkDevice.CHANGED_SNMP) || probe.getSNMPAvailable())
+                && device.getSNMPAvailable() != probe.getSNMPAvailable()) {
+            device.setSNMPAvailable(probe.getSNMPAvailable());
+            device.markChanged(NetworkDevice.CHANGED_SNMP);
+            emit(EventType.SNMP_CHANGED, device, !probe.getSNMPAvailable(), probe.getSNMPAvailable());
+        }
+        int[] ports = probe.getOpenPorts();
+        if (ports != null && !Arrays.equals(device.getOpenPorts(), ports)) {
+            String old = device.getOpenPortsText();
+            boolean unknown = device.getOpenPorts() == null;
+            device.setOpenPorts(ports);
+            // Пустой набор у ещё не проверенного устройства изменением не считается
+            if (!unknown || ports.length > 0) {
+                device.markChanged(NetworkDevice.CHANGED_PORTS);
+                emit(EventType.PORTS_CHANGED, device, old, device.getOpenPortsText());
+            }
+        }
+        if (probe.isEnriched()) {
+            // Прежнее определённое значение остаётся в силе, пока его не подтвердит или не изменит проверка
+            device.setUnknownFields(device.isEnriched()
+                    ? device.getUnknownFields() & probe.getUnknownFields() : probe.getUnknownFields());
+            device.setEnriched(true);
+        }
+    }
+
+    private static void copy(NetworkDevice from, NetworkDevice to) {
+        to.setMac(from.getMac());
+        to.setManufacturerName(from.getManufacturerName());
+        to.setDNSname(from.getDNSname());
+        to.setSNMPAvailable(from.getSNMPAvailable());
+        to.setOpenPorts(from.getOpenPorts());
+        to.setEnriched(from.isEnriched());
+        to.setUnknownFields(from.getUnknownFields());
+    }
+
+    private void emit(EventType type, NetworkDevice device, Object oldValue, Object newValue) {
+        listener.accept(new Event(type, device, oldValue, newValue));
+    }
+}
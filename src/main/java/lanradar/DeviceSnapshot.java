@@ -0,0 +1,162 @@
+package lanradar;
+
+import lanradar.NetworkDevice.DeviceStatus;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Снимок таблицы известных устройств для «тёплого» старта сканирования.
+ * <p>
+ * Файл ({@code lanradar.snapshot.file}, по умолчанию app/devices.snapshot) содержит IP и MAC-адрес, статус,
+ * флаги SNMP и дозаполнения, DNS-имя и номер производителя в таблице имён, записанной один раз в начале файла.
+ * Запись выполняется во временный файл с последующей атомарной заменой, поэтому прерванная запись
+ * не портит предыдущий снимок. Сканирование сохраняет свои устройства через {@link #merge(Path, Collection)},
+ * поэтому снимок хранит устройства всех когда-либо сканированных подсетей, а не только последней.
+ */
+public final class DeviceSnapshot {
+
+    static final int MAGIC = 0x4C524453;
+    static final int VERSION = 1;
+
+    private static final int FLAG_SNMP = 1;
+    private static final int FLAG_ENRICHED = 1 << 1;
+    private static final DeviceStatus[] STATUSES = DeviceStatus.values();
+
+    private DeviceSnapshot() {
+    }
+
+    /**
+     * Возвращает путь к файлу снимка.
+     *
+     * @return Путь из свойства {@code lanradar.snapshot.file} или app/devices.snapshot.
+     */
+    public static Path defaultPath() {
+        return Path.of(System.getProperty("lanradar.snapshot.file", "app/devices.snapshot"));
+    }
+
+    /**
+     * Записывает снимок.
+     *
+     * @param file    Файл снимка.
+     * @param devices Устройства; вызывающий отвечает за то, чтобы они не изменялись во время записи.
+     * @throws IOException Если файл не удалось записать.
+     */
+    public static void write(Path file, Collection<NetworkDevice> devices) throws IOException {
+        Map<String, Integer> vendorIds = new HashMap<>();
+        List<String> vendors = new ArrayList<>();
+        for (NetworkDevice device : devices) {
+            String vendor = device.getManufacturerName();
+            if (vendor != null && vendorIds.putIfAbsent(vendor, vendors.size()) == null) {
+                vendors.add(vendor);
+            }
+        }
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = parent.resolve(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(System.currentTimeMillis());
+            out.writeInt(vendors.size());
+            for (String vendor : vendors) {
+                out.writeUTF(vendor);
+            }
+            out.writeInt(devices.size());
+            for (NetworkDevice device : devices) {
+                String vendor = device.getManufacturerName();
+                out.writeInt(device.getIp());
+                out.writeLong(device.getMac());
+                out.writeInt(vendor == null ? -1 : vendorIds.get(vendor));
+                out.writeByte(device.getStatus().ordinal());
+                out.writeByte((device.getSNMPAvailable() ? FLAG_SNMP : 0) | (device.isEnriched() && device.getUnknownFields() == 0 ? FLAG_ENRICHED : 0));
+                out.writeUTF(device.getDNSname() == null ? "" : device.getDNSname());
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Дополняет снимок устройствами: записи с теми же IP-адресами заменяются, остальные записи файла
+     * (например, других подсетей) сохраняются. Повреждённый снимок заменяется новым.
+     *
+     * @param file    Файл снимка.
+     * @param devices Устройства; вызывающий отвечает за то, чтобы они не изменялись во время записи.
+     * @return Устройства записанного снимка.
+     * @throws IOException Если файл не удалось записать.
+     */
+    public static List<NetworkDevice> merge(Path file, Collection<NetworkDevice> devices) throws IOException {
+        Map<Integer, NetworkDevice> merged = new HashMap<>();
+        try {
+            for (NetworkDevice device : read(file)) {
+                merged.put(device.getIp(), device);
+            }
+        } catch (IOException e) {
+            // Повреждённый снимок не должен мешать сохранению нового
+        }
+        for (NetworkDevice device : devices) {
+            merged.put(device.getIp(), device);
+        }
+        List<NetworkDevice> result = new ArrayList<>(merged.values());
+        write(file, result);
+        return result;
+    }
+
+    /**
+     * Читает снимок. Имена производителей берутся из таблицы OUI, если она содержит то же имя,
+     * чтобы устройства делили один экземпляр строки.
+     *
+     * @param file Файл снимка.
+     * @return Устройства или пустой список, если файла нет.
+     * @throws IOException Если файл повреждён или не читается.
+     */
+    public static List<NetworkDevice> read(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Неизвестный формат снимка: " + file);
+            }
+            in.readLong();
+            String[] vendors = new String[in.readInt()];
+            for (int i = 0; i < vendors.length; i++) {
+                vendors[i] = in.readUTF();
+            }
+            int count = in.readInt();
+            List<NetworkDevice> devices = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                NetworkDevice device = new NetworkDevice(in.readInt());
+                device.setMac(in.readLong());
+                int vendorId = in.readInt();
+                int status = in.readUnsignedByte();
+                int flags = in.readUnsignedByte();
+                String dns = in.readUTF();
+                if (vendorId >= vendors.length || status >= STATUSES.length) {
+                    throw new IOException("Повреждён снимок: " + file);
+                }
+                NetworkDevice.findManufacturerName(device);
+                if (device.getManufacturerName() == null && vendorId >= 0) {
+                    device.setManufacturerName(vendors[vendorId]);
+                }
+                device.setStatus(STATUSES[status]);
+                device.setSNMPAvailable((flags & FLAG_SNMP) != 0);
+                device.setEnriched((flags & FLAG_ENRICHED) != 0);
+                device.setDNSname(dns.isEmpty() ? null : dns);
+                devices.add(device);
+            }
+            return devices;
+        } catch (NoSuchFileException e) {
+            return List.of();
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package lanradar;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Асинхронное определение DNS-имён устройств (обратные запросы PTR) с кэшем.
+ * <p>
+ * Запросы выполняются на постоянном пуле из {@code lanradar.dns.concurrency} платформенных потоков: в Java 21
+ * {@code InetAddress.getHostName} — нативный вызов, который на виртуальном потоке занял бы поток-носитель,
+ * и медленные DNS-запросы остановили бы сканирование (см. {@link ScanEngine#callPinned}).
+ * Найденные имена хранятся {@code lanradar.dns.positiveTtlSeconds} секунд, отсутствие имени —
+ * {@code lanradar.dns.negativeTtlSeconds} секунд. Устаревшее имя возвращается сразу и обновляется в фоне,
+ * поэтому повторные сканирования не ждут DNS. Одновременные запросы одного адреса объединяются.
+ * Кэш хранит не более 65536 адресов; при переполнении вытесняется адрес, к которому дольше всего
+ * не обращались.
+ */
+public final class DnsResolver {
+
+    private static final int DEFAULT_CONCURRENCY = 16;
+    private static final long DEFAULT_POSITIVE_TTL_SECONDS = 600;
+    private static final long DEFAULT_NEGATIVE_TTL_SECONDS = 60;
+    private static final int MAX_CACHED_ENTRIES = 65536;
+
+    private final long positiveTtlNanos;
+    private final long negativeTtlNanos;
+    private final Map<Integer, Entry> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Entry> eldest) {
+            return size() > MAX_CACHED_ENTRIES;
+        }
+    };
+    private final Map<Integer, CompletableFuture<String>> pending = new ConcurrentHashMap<>();
+    private final ExecutorService executor;
+
+    /**
+     * Создаёт резолвер.
+     *
+     * @param concurrency        Максимальное число одновременных запросов (число потоков пула).
+     * @param positiveTtlSeconds Время хранения найденного имени.
+     * @param negativeTtlSeconds Время хранения отсутствия имени.
+     */
+    public DnsResolver(int concurrency, long positiveTtlSeconds, long negativeTtlSeconds) {
+        if (concurrency < 1 || positiveTtlSeconds < 0 || negativeTtlSeconds < 0) {
+            throw new IllegalArgumentException("Некорректные параметры резолвера");
+        }
+        this.executor = Executors.newFixedThreadPool(concurrency,
+                Thread.ofPlatform().name("dns-", 0).daemon(true).factory());
+        this.positiveTtlNanos = TimeUnit.SECONDS.toNanos(positiveTtlSeconds);
+        this.negativeTtlNanos = TimeUnit.SECONDS.toNanos(negativeTtlSeconds);
+    }
+
+    /**
+     * Ленивая инициализация общего резолвера.
+     */
+    private static final class Holder {
+        static final DnsResolver INSTANCE = new DnsResolver(
+                Integer.getInteger("lanradar.dns.concurrency", DEFAULT_CONCURRENCY),
+                Long.getLong("lanradar.dns.positiveTtlSeconds", DEFAULT_POSITIVE_TTL_SECONDS),
+                Long.getLong("lanradar.dns.negativeTtlSeconds", DEFAULT_NEGATIVE_TTL_SECONDS));
+    }
+
+    /**
+     * Возвращает общий для приложения резолвер.
+     *
+     * @return Резолвер.
+     */
+    public static DnsResolver getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Запись кэша: имя (или null, если имени нет) и момент устаревания.
+     */
+    private static final class Entry {
+        final String name;
+        final long expiresNanos;
+
+        Entry(String name, long expiresNanos) {
+            this.name = name;
+            this.expiresNanos = expiresNanos;
+        }
+    }
+
+    /**
+     * Возвращает DNS-имя адреса. Если имя есть в кэше, возвращается уже завершённый Future.
+     *
+     * @param ipAddress IPv4-адрес в виде int.
+     * @return Future с именем или null, если имени нет либо запрос не удался.
+     */
+    public CompletableFuture<String> resolve(int ipAddress) {
+        Entry entry;
+        synchronized (cache) {
+            entry = cache.get(ipAddress);
+        }
+        if (entry != null) {
+            if (System.nanoTime() - entry.expiresNanos < 0) {
+                return CompletableFuture.completedFuture(entry.name);
+            }
+            if (entry.name != null) {
+                lookup(ipAddress);
+                return CompletableFuture.completedFuture(entry.name);
+            }
+        }
+        return lookup(ipAddress);
+    }
+
+    private CompletableFuture<String> lookup(int ipAddress) {
+        CompletableFuture<String> result = new CompletableFuture<>();
+        CompletableFuture<String> existing = pending.putIfAbsent(ipAddress, result);
+        if (existing != null) {
+            return existing;
+        }
+        executor.execute(() -> {
+            String name = null;
+            try {
+                name = reverseLookup(ipAddress);
+                store(ipAddress, name);
+            } finally {
+                pending.remove(ipAddress, result);
+                result.complete(name);
+            }
+        });
+        return result;
+    }
+
+    private void store(int ipAddress, String name) {
+        Entry entry = new Entry(name, System.nanoTime() + (name != null ? positiveTtlNanos : negativeTtlNanos));
+        synchronized (cache) {
+            cache.put(ipAddress, entry);
+        }
+    }
+
+    /**
+     * Выполняет обратный запрос. InetAddress.getHostName возвращает сам адрес, если имени нет.
+     *
+     * @param ipAddress IPv4-адрес в виде int.
+     * @return Имя или null.
+     */
+    private static String reverseLookup(int ipAddress) {
+        String name = UtilityNetwork.toInetAddress(ipAddress).getHostName();
+        return name.equals(UtilityNetwork.formatIpv4(ipAddress)) ? null : name;
+    }
+
+    /**
+     * Возвращает число выполняющихся и ожидающих запросов.
+     *
+     * @return Число запросов.
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Возвращает число записей в кэше (включая отрицательные).
+     *
+     * @return Число записей.
+     */
+    public int getCacheSize() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+}
@@ -0,0 +1,458 @@
+package lanradar;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Конвейер дозаполнения найденных устройств.
+ * <p>
+ * Устройство, ответившее на пинг, проходит независимые стадии: определение MAC-адреса, затем поиск
+ * производителя, а параллельно им — обратный DNS-запрос, проверку SNMP и проверку открытых TCP-портов
+ * ({@link PortScanner}, без отдельных обработчиков). У каждой стадии своя
+ * ограниченная очередь и своё число обработчиков (свойства {@code lanradar.enrich.*Workers} и
+ * {@code lanradar.enrich.queueCapacity}). Задача определения MAC-адреса ставится первой, и при
+ * заполнении её очереди отправитель ждёт. Стадии DNS и SNMP асинхронные: их запросы не занимают
+ * потоков, а число одновременных запросов ограничено семафором. Отправитель их никогда не ждёт:
+ * задача, не поместившаяся в очередь, отбрасывается, а её поле остаётся неизвестным
+ * ({@link NetworkDevice#isKnown(int)}). Устройство
+ * передаётся дальше сразу после определения MAC-адреса и производителя, а DNS-имя и флаг SNMP
+ * дописываются в него по мере готовности.
+ * <p>
+ * Для устройств, переданных в {@link #preload(Collection)}, DNS-запрос и проверка SNMP откладываются до
+ * определения MAC-адреса: если он не изменился, DNS-имя и флаг SNMP берутся из известного состояния.
+ */
+public final class EnrichmentPipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(EnrichmentPipeline.class);
+    private static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+    /**
+     * Получатель результатов конвейера. Методы вызываются из потоков стадий.
+     */
+    public interface Listener {
+        /**
+         * Вызывается, когда у устройства определены MAC-адрес и производитель.
+         *
+         * @param device Устройство.
+         */
+        void onDiscovered(NetworkDevice device);
+
+        /**
+         * Вызывается, когда в уже переданное устройство дописаны DNS-имя или флаг SNMP.
+         *
+         * @param device Устройство.
+         */
+        void onUpdated(NetworkDevice device);
+    }
+
+    /**
+     * Задача стадии.
+     */
+    @FunctionalInterface
+    interface Job {
+        /**
+         * Выполняет синхронную задачу или запускает асинхронную.
+         *
+         * @return Future асинхронной операции или null, если задача уже выполнена.
+         */
+        CompletableFuture<?> start();
+    }
+
+    /**
+     * Стадия конвейера: ограниченная очередь и обработчики на виртуальных потоках. Синхронная стадия
+     * выполняет задачи в постоянном наборе обработчиков. Асинхронная стадия запускает задачи из одного
+     * потока-диспетчера, а число незавершённых операций ограничивает семафором.
+     */
+    public static final class Stage {
+        private final String name;
+        private final int workers;
+        private final BlockingQueue<Job> queue;
+        private final Semaphore inFlight;
+        private final AtomicLong processed = new AtomicLong();
+        private final AtomicLong dropped = new AtomicLong();
+        private final AtomicLong busyNanos = new AtomicLong();
+
+        Stage(String name, int workers, int queueCapacity, boolean async) {
+            if (workers < 1) {
+                throw new IllegalArgumentException("Число обработчиков стадии " + name + " должно быть положительным");
+            }
+            this.name = name;
+            this.workers = workers;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+            this.inFlight = async ? new Semaphore(workers) : null;
+            for (int i = 0; i < (async ? 1 : workers); i++) {
+                Thread.ofVirtual().name("enrich-" + name + "-" + i).start(this::work);
+            }
+        }
+
+        private void work() {
+            while (true) {
+                Job job;
+                try {
+                    job = queue.take();
+                    if (inFlight != null) {
+                        inFlight.acquire();
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long started = System.nanoTime();
+                CompletableFuture<?> operation = null;
+                try {
+                    operation = job.start();
+                } catch (RuntimeException e) {
+                    logger.error("Ошибка на стадии {}: {}", name, e.getMessage(), e);
+                } finally {
+                    if (operation == null) {
+                        finish(started);
+                    }
+                }
+                if (operation != null) {
+                    operation.whenComplete((result, ex) -> finish(started));
+                }
+            }
+        }
+
+        private void finish(long started) {
+            busyNanos.addAndGet(System.nanoTime() - started);
+            processed.incrementAndGet();
+            if (inFlight != null) {
+                inFlight.release();
+            }
+        }
+
+        void submit(Job job) throws InterruptedException {
+            queue.put(job);
+        }
+
+        /**
+         * Ставит задачу в очередь без ожидания.
+         *
+         * @return false, если очередь заполнена и задача отброшена.
+         */
+        boolean offer(Job job) {
+            if (queue.offer(job)) {
+                return true;
+            }
+            dropped.incrementAndGet();
+            return false;
+        }
+
+        /**
+         * Возвращает название стадии.
+         *
+         * @return Название.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Возвращает число обработчиков стадии (для асинхронной стадии — предел одновременных операций).
+         *
+         * @return Число обработчиков.
+         */
+        public int getWorkers() {
+            return workers;
+        }
+
+        /**
+         * Возвращает число задач в очереди стадии.
+         *
+         * @return Длина очереди.
+         */
+        public int getQueued() {
+            return queue.size();
+        }
+
+        /**
+         * Возвращает число обработанных задач.
+         *
+         * @return Число задач.
+         */
+        public long getProcessed() {
+            return processed.get();
+        }
+
+        /**
+         * Возвращает число задач, отброшенных из-за заполненной очереди.
+         *
+         * @return Число задач.
+         */
+        public long getDropped() {
+            return dropped.get();
+        }
+
+        /**
+         * Возвращает среднее время обработки одной задачи.
+         *
+         * @return Время в миллисекундах или 0, если задач ещё не было.
+         */
+        public double getAverageMillis() {
+            long count = processed.get();
+            return count == 0 ? 0 : busyNanos.get() / 1_000_000.0 / count;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s{workers=%d, queued=%d, processed=%d, dropped=%d, avg=%.1fms}",
+                    name, workers, getQueued(), getProcessed(), getDropped(), getAverageMillis());
+        }
+    }
+
+    /**
+     * Состояние дозаполнения одного устройства. Изменения устройства выполняются под монитором
+     * этого объекта, чтобы результаты стадий не терялись и не опережали передачу устройства.
+     */
+    private static final class Enrichment {
+        final NetworkDevice device;
+        final int ipAddress;
+        final Listener listener;
+        final NetworkDevice known;
+        final CompletableFuture<NetworkDevice> discovered = new CompletableFuture<>();
+        int remaining = 3;
+        boolean emitted;
+
+        Enrichment(NetworkDevice device, int ipAddress, Listener listener, NetworkDevice known) {
+            this.device = device;
+            this.ipAddress = ipAddress;
+            this.listener = listener;
+            this.known = known;
+        }
+    }
+
+    private final Stage macStage;
+    private final Stage vendorStage;
+    private final Stage dnsStage;
+    private final Stage snmpStage;
+    private final Map<Integer, NetworkDevice> preloaded = new ConcurrentHashMap<>();
+
+    /**
+     * Создаёт конвейер с заданным числом обработчиков на стадиях.
+     *
+     * @param macWorkers    Обработчики определения MAC-адреса.
+     * @param vendorWorkers Обработчики поиска производителя.
+     * @param dnsWorkers    Предел одновременных DNS-запросов.
+     * @param snmpWorkers   Предел одновременных проверок SNMP.
+     * @param queueCapacity Ёмкость очереди каждой стадии.
+     */
+    public EnrichmentPipeline(int macWorkers, int vendorWorkers, int dnsWorkers, int snmpWorkers, int queueCapacity) {
+        this.macStage = new Stage("mac", macWorkers, queueCapacity, false);
+        this.vendorStage = new Stage("vendor", vendorWorkers, queueCapacity, false);
+        this.dnsStage = new Stage("dns", dnsWorkers, queueCapacity, true);
+        this.snmpStage = new Stage("snmp", snmpWorkers, queueCapacity, true);
+    }
+
+    /**
+     * Ленивая инициализация общего конвейера.
+     */
+    private static final class Holder {
+        static final EnrichmentPipeline INSTANCE = new EnrichmentPipeline(
+                Integer.getInteger("lanradar.enrich.macWorkers", 8),
+                Integer.getInteger("lanradar.enrich.vendorWorkers", 4),
+                Integer.getInteger("lanradar.enrich.dnsWorkers", 16),
+                Integer.getInteger("lanradar.enrich.snmpWorkers", 256),
+                Integer.getInteger("lanradar.enrich.queueCapacity", DEFAULT_QUEUE_CAPACITY));
+    }
+
+    /**
+     * Возвращает общий для приложения конвейер.
+     *
+     * @return Конвейер.
+     */
+    public static EnrichmentPipeline getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Ставит ответившее устройство в конвейер.
+     *
+     * @param device    Устройство с заполненным IP-адресом.
+     * @param ipAddress IPv4-адрес устройства в виде int.
+     * @param listener  Получатель результатов.
+     * @return Future, завершающийся после вызова {@link Listener#onDiscovered(NetworkDevice)}.
+     * @throws InterruptedException Если поток прерван во время ожидания места в очереди MAC-адресов.
+     */
+    public CompletableFuture<NetworkDevice> submit(NetworkDevice device, int ipAddress, Listener listener)
+            throws InterruptedException {
+        Enrichment e = new Enrichment(device, ipAddress, listener, preloaded.remove(ipAddress));
+        PortScanner ports = PortScanner.getInstance();
+        if (ports != null) {
+            e.remaining++;
+        }
+        macStage.submit(() -> {
+            resolveMac(e);
+            return null;
+        });
+        if (e.known == null) {
+            offerDnsAndSnmp(e);
+        }
+        if (ports != null) {
+            ports.scan(ipAddress).whenComplete((open, ex) -> update(e, null, null, open));
+        }
+        return e.discovered;
+    }
+
+    /**
+     * Запоминает известное состояние устройств. При следующей проверке каждого из них DNS-имя и флаг SNMP
+     * переносятся из известного состояния, если MAC-адрес не изменился. Каждое состояние используется
+     * один раз, поэтому последующие сканирования дозаполняют устройства как обычно.
+     *
+     * @param devices Дозаполненные устройства с известным MAC-адресом и определёнными полями;
+     *                остальные пропускаются.
+     */
+    public void preload(Collection<NetworkDevice> devices) {
+        preloaded.clear();
+        for (NetworkDevice device : devices) {
+            if (device.isEnriched() && device.getUnknownFields() == 0 && device.getMac() != NetworkDevice.NO_MAC) {
+                preloaded.put(device.getIp(), device);
+            }
+        }
+    }
+
+    private void resolveMac(Enrichment e) {
+        try {
+            NetworkScanner.macAddressResolverARP(e.device);
+            if (e.device.getMac() == NetworkDevice.NO_MAC) {
+                NetworkScanner.macAddressResolverNetworkInterface(e.device);
+            }
+        } catch (IOException ex) {
+            logger.error("Ошибка определения MAC ({}): {}", e.device.getIpAddress(), ex.getMessage(), ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        if (e.known != null) {
+            reuseKnown(e);
+        }
+        try {
+            vendorStage.submit(() -> {
+                findVendor(e);
+                return null;
+            });
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            emit(e);
+        }
+    }
+
+    private void reuseKnown(Enrichment e) {
+        if (e.device.getMac() == e.known.getMac()) {
+            synchronized (e) {
+                e.device.setDNSname(e.known.getDNSname());
+                e.device.setSNMPAvailable(e.known.getSNMPAvailable());
+                e.remaining -= 2;
+            }
+            return;
+        }
+        offerDnsAndSnmp(e);
+    }
+
+    /**
+     * Ставит DNS-запрос и проверку SNMP без ожидания. Отброшенная задача засчитывается как выполненная,
+     * а её поле отмечается неизвестным, чтобы пустое значение не приняли за результат проверки.
+     */
+    private void offerDnsAndSnmp(Enrichment e) {
+        if (!dnsStage.offer(() -> resolveDns(e))) {
+            drop(e, NetworkDevice.CHANGED_DNS);
+        }
+        if (!snmpStage.offer(() -> probeSnmp(e))) {
+            drop(e, NetworkDevice.CHANGED_SNMP);
+        }
+    }
+
+    private void drop(Enrichment e, int field) {
+        synchronized (e) {
+            e.device.markUnknown(field);
+        }
+        update(e, null, null, null);
+    }
+
+    private void findVendor(Enrichment e) {
+        try {
+            NetworkDevice.findManufacturerName(e.device);
+        } finally {
+            emit(e);
+        }
+    }
+
+    private void emit(Enrichment e) {
+        synchronized (e) {
+            e.emitted = true;
+            complete(e);
+        }
+        try {
+            e.listener.onDiscovered(e.device);
+        } finally {
+            e.discovered.complete(e.device);
+        }
+    }
+
+    private CompletableFuture<?> resolveDns(Enrichment e) {
+        return DnsResolver.getInstance().resolve(e.ipAddress)
+                .whenComplete((name, ex) -> update(e, name, null, null));
+    }
+
+    private CompletableFuture<?> probeSnmp(Enrichment e) {
+        CompletableFuture<Boolean> probe;
+        try {
+            probe = SNMP.isPortSNMPOpenAsync(e.device.getIpAddress());
+        } catch (RuntimeException ex) {
+            logger.error("Ошибка проверки SNMP ({}): {}", e.device.getIpAddress(), ex.getMessage(), ex);
+            probe = CompletableFuture.completedFuture(false);
+        }
+        return probe.whenComplete((available, ex) -> update(e, null, Boolean.TRUE.equals(available), null));
+    }
+
+    private void update(Enrichment e, String dnsName, Boolean snmpAvailable, int[] openPorts) {
+        boolean notify;
+        synchronized (e) {
+            if (dnsName != null) {
+                e.device.setDNSname(dnsName);
+            }
+            if (snmpAvailable != null) {
+                e.device.setSNMPAvailable(snmpAvailable);
+            }
+            if (openPorts != null) {
+                e.device.setOpenPorts(openPorts);
+            }
+            complete(e);
+            // Об устройстве без изменений сообщается только при завершении дозаполнения
+            notify = e.emitted && (dnsName != null || Boolean.TRUE.equals(snmpAvailable)
+                    || (openPorts != null && openPorts.length > 0) || e.remaining == 0);
+        }
+        if (notify) {
+            e.listener.onUpdated(e.device);
+        }
+    }
+
+    private static void complete(Enrichment e) {
+        if (--e.remaining == 0) {
+            e.device.setEnriched(true);
+        }
+    }
+
+    /**
+     * Возвращает стадии конвейера для наблюдения за очередями и временем обработки.
+     *
+     * @return Стадии в порядке: MAC, производитель, DNS, SNMP.
+     */
+    public List<Stage> getStages() {
+        return List.of(macStage, vendorStage, dnsStage, snmpStage);
+    }
+
+    @Override
+    public String toString() {
+        return "EnrichmentPipeline" + getStages();
+    }
+}
@@ -0,0 +1,233 @@
+package lanradar;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.IntConsumer;
+
+/**
+ * Непрерывный диапазон IPv4-адресов, хранящийся как пара беззнаковых 32-битных чисел.
+ * <p>
+ * Обход диапазона ленивый и не создаёт объектов на каждый адрес, поэтому план сканирования
+ * занимает постоянный объём памяти независимо от размера подсети.
+ */
+public final class Ipv4Range {
+
+    private final int first;
+    private final int last;
+
+    private Ipv4Range(int first, int last) {
+        this.first = first;
+        this.last = last;
+    }
+
+    /**
+     * Создаёт диапазон по границам.
+     *
+     * @param first Первый адрес (включительно).
+     * @param last  Последний адрес (включительно).
+     * @return Диапазон.
+     * @throws IllegalArgumentException Если first больше last.
+     */
+    public static Ipv4Range of(int first, int last) {
+        if (Integer.compareUnsigned(first, last) > 0) {
+            throw new IllegalArgumentException("Начало диапазона больше конца: "
+                    + UtilityNetwork.formatIpv4(first) + " > " + UtilityNetwork.formatIpv4(last));
+        }
+        return new Ipv4Range(first, last);
+    }
+
+    /**
+     * Создаёт диапазон по строковым границам.
+     *
+     * @param first Первый IPv4-адрес.
+     * @param last  Последний IPv4-адрес.
+     * @return Диапазон.
+     * @throws IllegalArgumentException Если адреса некорректны.
+     */
+    public static Ipv4Range of(String first, String last) {
+        long start = UtilityNetwork.parseIpv4(first);
+        long end = UtilityNetwork.parseIpv4(last);
+        if (start < 0 || end < 0) {
+            throw new IllegalArgumentException("Некорректные IPv4 адреса (start=" + first + ", end=" + last + ")");
+        }
+        return of((int) start, (int) end);
+    }
+
+    /**
+     * Возвращает диапазон хостов подсети: без адреса сети и широковещательного адреса
+     * (для масок /31 и /32 — все адреса подсети).
+     *
+     * @param cidr Подсеть в формате "ip/mask" (например, "192.168.0.99/24").
+     * @return Диапазон хостов.
+     * @throws IllegalArgumentException Если формат подсети некорректен.
+     */
+    public static Ipv4Range fromCidr(String cidr) {
+        int slash = cidr == null ? -1 : cidr.indexOf('/');
+        long address = slash < 0 ? -1 : UtilityNetwork.parseIpv4(cidr.substring(0, slash));
+        int prefixLength;
+        try {
+            prefixLength = slash < 0 ? -1 : Integer.parseInt(cidr.substring(slash + 1));
+        } catch (NumberFormatException e) {
+            prefixLength = -1;
+        }
+        if (address < 0 || prefixLength < 0 || prefixLength > 32) {
+            throw new IllegalArgumentException("Некорректный формат подсети: " + cidr);
+        }
+        int mask = prefixLength == 0 ? 0 : -1 << (32 - prefixLength);
+        int network = (int) address & mask;
+        int broadcast = network | ~mask;
+        if (prefixLength >= 31) {
+            return new Ipv4Range(network, broadcast);
+        }
+        return new Ipv4Range(network + 1, broadcast - 1);
+    }
+
+    /**
+     * Возвращает первый адрес диапазона.
+     *
+     * @return IPv4-адрес в виде int.
+     */
+    public int first() {
+        return first;
+    }
+
+    /**
+     * Возвращает последний адрес диапазона.
+     *
+     * @return IPv4-адрес в виде int.
+     */
+    public int last() {
+        return last;
+    }
+
+    /**
+     * Возвращает число адресов в диапазоне.
+     *
+     * @return Число адресов (до 2^32).
+     */
+    public long size() {
+        return Integer.toUnsignedLong(last) - Integer.toUnsignedLong(first) + 1;
+    }
+
+    /**
+     * Проверяет, входит ли адрес в диапазон.
+     *
+     * @param ipAddress IPv4-адрес в виде int.
+     * @return true, если адрес входит в диапазон.
+     */
+    public boolean contains(int ipAddress) {
+        return Integer.compareUnsigned(ipAddress, first) >= 0 && Integer.compareUnsigned(ipAddress, last) <= 0;
+    }
+
+    /**
+     * Возвращает смещение адреса от начала диапазона.
+     *
+     * @param ipAddress IPv4-адрес в виде int.
+     * @return Смещение или -1, если адрес не входит в диапазон.
+     */
+    public long offsetOf(int ipAddress) {
+        return contains(ipAddress) ? Integer.toUnsignedLong(ipAddress) - Integer.toUnsignedLong(first) : -1;
+    }
+
+    /**
+     * Возвращает адрес по смещению от начала диапазона.
+     *
+     * @param offset Смещение (от 0 до size() - 1).
+     * @return IPv4-адрес в виде int.
+     */
+    public int addressAt(long offset) {
+        if (offset < 0 || offset >= size()) {
+            throw new IndexOutOfBoundsException("Смещение вне диапазона: " + offset);
+        }
+        return (int) (Integer.toUnsignedLong(first) + offset);
+    }
+
+    /**
+     * Возвращает ленивый итератор по адресам диапазона.
+     *
+     * @return Итератор без упаковки значений.
+     */
+    public PrimitiveIterator.OfInt iterator() {
+        return new PrimitiveIterator.OfInt() {
+            private long next = Integer.toUnsignedLong(first);
+            private final long end = Integer.toUnsignedLong(last);
+
+            @Override
+            public boolean hasNext() {
+                return next <= end;
+            }
+
+            @Override
+            public int nextInt() {
+                if (next > end) {
+                    throw new NoSuchElementException();
+                }
+                return (int) next++;
+            }
+        };
+    }
+
+    /**
+     * Выполняет действие для каждого адреса диапазона по возрастанию.
+     *
+     * @param action Действие.
+     */
+    public void forEach(IntConsumer action) {
+        long end = Integer.toUnsignedLong(last);
+        for (long ip = Integer.toUnsignedLong(first); ip <= end; ip++) {
+            action.accept((int) ip);
+        }
+    }
+
+    /**
+     * Делит диапазон на не более чем parts смежных частей примерно равного размера,
+     * например для раздачи параллельным обработчикам.
+     *
+     * @param parts Желаемое число частей.
+     * @return Список частей в порядке возрастания адресов.
+     */
+    public List<Ipv4Range> split(int parts) {
+        if (parts < 1) {
+            throw new IllegalArgumentException("Число частей должно быть положительным: " + parts);
+        }
+        long size = size();
+        long chunk = (size + parts - 1) / parts;
+        List<Ipv4Range> result = new ArrayList<>((int) Math.min(parts, size));
+        long start = Integer.toUnsignedLong(first);
+        long end = Integer.toUnsignedLong(last);
+        while (start <= end) {
+            long chunkEnd = Math.min(end, start + chunk - 1);
+            result.add(new Ipv4Range((int) start, (int) chunkEnd));
+            start = chunkEnd + 1;
+        }
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Ipv4Range other)) {
+            return false;
+        }
+        return first == other.first && last == other.last;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * first + last;
+    }
+
+    /**
+     * Возвращает строковое представление диапазона.
+     *
+     * @return Строка вида "192.168.0.1-192.168.0.254".
+     */
+    @Override
+    public String toString() {
+        return UtilityNetwork.formatIpv4(first) + "-" + UtilityNetwork.formatIpv4(last);
+    }
+}
@@ -0,0 +1,30 @@
+package lanradar;
+
+import java.io.IOException;
+import java.net.InetAddress;
+
+/**
+ * Проверка через {@link InetAddress#isReachable(int)}: ICMP echo при наличии прав, иначе TCP-соединение
+ * с портом 7. Вызов выполняется на платформенном потоке {@link ScanEngine}, так как в Java 21 он блокирует
+ * поток-носитель виртуального потока.
+ */
+public final class IsReachableProbe implements LivenessProbe {
+
+    @Override
+    public String getName() {
+        return "icmp";
+    }
+
+    @Override
+    public boolean isAlive(InetAddress address, int timeoutMillis) throws InterruptedException {
+        try {
+            return ScanEngine.getInstance().callPinned(() -> address.isReachable(timeoutMillis));
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (IOException e) {
+            return false;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package lanradar;
+
+import java.util.Arrays;
+
+/**
+ * Точка входа приложения. С первым параметром {@code --headless} запускает консольный режим
+ * {@link NetworkScannerCli}, не загружая классы JavaFX; иначе открывает окно {@link NetworkScannerApp}.
+ */
+public final class Launcher {
+
+    private Launcher() {
+    }
+
+    /**
+     * Точка входа.
+     *
+     * @param args Аргументы командной строки.
+     */
+    public static void main(String[] args) {
+        StartupTrace.mark("main");
+        if (args.length > 0 && args[0].equals("--headless")) {
+            NetworkScannerCli.main(Arrays.copyOfRange(args, 1, args.length));
+        } else {
+            NetworkScannerApp.main(args);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package lanradar;
+
+import java.net.InetAddress;
+
+/**
+ * Способ проверки доступности адреса. Реализации используются по отдельности или в гонке
+ * {@link CompositeLivenessProbe}, поэтому должны корректно завершаться при прерывании потока.
+ */
+public interface LivenessProbe {
+
+    /**
+     * Возвращает краткое название способа для статистики и журнала.
+     *
+     * @return Название (например, "icmp" или "tcp/445").
+     */
+    String getName();
+
+    /**
+     * Проверяет, отвечает ли адрес.
+     *
+     * @param address       Проверяемый адрес.
+     * @param timeoutMillis Время ожидания ответа.
+     * @return true, если адрес ответил; false при отсутствии ответа или ошибке сети.
+     * @throws InterruptedException Если поток прерван.
+     */
+    boolean isAlive(InetAddress address, int timeoutMillis) throws InterruptedException;
+}
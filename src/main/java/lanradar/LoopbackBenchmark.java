@@ -0,0 +1,164 @@
+package lanradar;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Замер сканеров на локальных слушателях в 127.0.0.0/8. Запускается вручную:
+ * <pre>
+ * java -cp LANRadar-shaded.jar lanradar.LoopbackBenchmark ports [адресов] [слушателей на адрес]
+ * java -cp LANRadar-shaded.jar lanradar.LoopbackBenchmark liveness [адресов] [повторов]
+ * </pre>
+ * В режиме {@code ports} на каждом адресе 127.0.0.1..127.0.0.N открываются слушатели на свободных портах,
+ * после чего сканер проверяет эти порты вместе с таким же числом соседних закрытых. Выводится время,
+ * скорость подключений и расхождения с ожидаемым списком открытых портов (код выхода 1 при пропусках).
+ * <p>
+ * В режиме {@code liveness} на каждом адресе открывается слушатель на общем порту, и адреса проверяются
+ * гонкой {@link CompositeLivenessProbe} из TCP-проверок открытого и закрытого портов, UDP и ICMP. Выводятся
+ * время, статистика способов и адреса, не признанные доступными (код выхода 1).
+ */
+public final class LoopbackBenchmark {
+
+    private static final int DEFAULT_HOSTS = 16;
+    private static final int DEFAULT_LISTENERS = 32;
+    private static final int DEFAULT_ROUNDS = 20;
+    private static final int LIVENESS_TIMEOUT_MILLIS = 1000;
+
+    private LoopbackBenchmark() {
+    }
+
+    /**
+     * Точка входа.
+     *
+     * @param args Режим ({@code ports} или {@code liveness}), необязательные число адресов и число слушателей
+     *             на адрес (для {@code ports}) или повторов (для {@code liveness}).
+     * @throws Exception При ошибке открытия слушателей или сканирования.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1 || args.length > 3 || !(args[0].equals("ports") || args[0].equals("liveness"))) {
+            System.err.println("Использование: LoopbackBenchmark ports [адресов] [слушателей на адрес]");
+            System.err.println("               LoopbackBenchmark liveness [адресов] [повторов]");
+            System.exit(2);
+        }
+        boolean ports = args[0].equals("ports");
+        int hosts = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_HOSTS;
+        int count = args.length > 2 ? Integer.parseInt(args[2]) : ports ? DEFAULT_LISTENERS : DEFAULT_ROUNDS;
+        if (hosts < 1 || hosts > 254 || count < 1) {
+            throw new IllegalArgumentException("Некорректные параметры замера");
+        }
+        System.exit((ports ? benchmarkPorts(hosts, count) : benchmarkLiveness(hosts, count)) ? 0 : 1);
+    }
+
+    /**
+     * Сканирует слушателей на адресах 127.0.0.1..127.0.0.{@code hosts} и сверяет найденные порты.
+     *
+     * @return true, если найдены все открытые порты.
+     */
+    private static boolean benchmarkPorts(int hosts, int listeners) throws IOException {
+        List<ServerSocketChannel> servers = new ArrayList<>();
+        try {
+            int[][] open = new int[hosts][];
+            int[][] probe = new int[hosts][];
+            for (int h = 0; h < hosts; h++) {
+                open[h] = new int[listeners];
+                probe[h] = new int[listeners * 2];
+                for (int i = 0; i < listeners; i++) {
+                    ServerSocketChannel server = ServerSocketChannel.open();
+                    servers.add(server);
+                    server.bind(new InetSocketAddress("127.0.0." + (h + 1), 0));
+                    open[h][i] = server.socket().getLocalPort();
+                    probe[h][2 * i] = open[h][i];
+                    probe[h][2 * i + 1] = open[h][i] == 65535 ? 1 : open[h][i] + 1;
+                }
+                Arrays.sort(open[h]);
+            }
+
+            int connects = hosts * listeners * 2;
+            boolean complete = true;
+            try (PortScanner scanner = new PortScanner(new int[0], connects, listeners * 2, Integer.MAX_VALUE,
+                    1000)) {
+                long start = System.nanoTime();
+                List<CompletableFuture<int[]>> results = new ArrayList<>();
+                for (int h = 0; h < hosts; h++) {
+                    results.add(scanner.scan(0x7F000001 + h, probe[h]));
+                }
+                for (int h = 0; h < hosts; h++) {
+                    int[] found = results.get(h).join();
+                    int[] missing = Arrays.stream(open[h]).filter(p -> Arrays.binarySearch(found, p) < 0).toArray();
+                    if (missing.length > 0) {
+                        complete = false;
+                        System.out.println("127.0.0." + (h + 1) + ": не найдены " + Arrays.toString(missing));
+                    }
+                    if (found.length > open[h].length + missing.length) {
+                        System.out.println("127.0.0." + (h + 1) + ": найдены посторонние открытые порты: "
+                                + (found.length - open[h].length + missing.length));
+                    }
+                }
+                long elapsed = System.nanoTime() - start;
+                System.out.printf("ports: %d адресов, %d подключений за %.1f мс (%.0f/с), предел %d, %s%n",
+                        hosts, connects, elapsed / 1e6, connects * 1e9 / elapsed, scanner.getMaxInFlight(),
+                        scanner);
+            }
+            return complete;
+        } finally {
+            for (ServerSocketChannel server : servers) {
+                server.close();
+            }
+        }
+    }
+
+    /**
+     * Проверяет гонкой способов адреса 127.0.0.1..127.0.0.{@code hosts} с открытым слушателем.
+     *
+     * @return true, если все адреса признаны доступными.
+     */
+    private static boolean benchmarkLiveness(int hosts, int rounds) throws IOException, InterruptedException {
+        List<ServerSocketChannel> servers = new ArrayList<>();
+        try {
+            ServerSocketChannel first = ServerSocketChannel.open();
+            servers.add(first);
+            first.bind(new InetSocketAddress("127.0.0.1", 0));
+            int port = first.socket().getLocalPort();
+            InetAddress[] addresses = new InetAddress[hosts];
+            addresses[0] = InetAddress.getByName("127.0.0.1");
+            for (int h = 1; h < hosts; h++) {
+                addresses[h] = InetAddress.getByName("127.0.0." + (h + 1));
+                ServerSocketChannel server = ServerSocketChannel.open();
+                servers.add(server);
+                server.bind(new InetSocketAddress(addresses[h], port));
+            }
+            int closedPort = port == 65535 ? 1 : port + 1;
+
+            CompositeLivenessProbe race = new CompositeLivenessProbe(List.of(new TcpConnectProbe(port),
+                    new TcpConnectProbe(closedPort), new UdpNudgeProbe(closedPort), new IsReachableProbe()));
+            boolean complete = true;
+            long start = System.nanoTime();
+            for (int round = 0; round < rounds; round++) {
+                for (InetAddress address : addresses) {
+                    if (!race.isAlive(address, LIVENESS_TIMEOUT_MILLIS)) {
+                        complete = false;
+                        System.out.println(address.getHostAddress() + ": не ответил (повтор " + (round + 1) + ")");
+                    }
+                }
+            }
+            long elapsed = System.nanoTime() - start;
+            int checks = hosts * rounds;
+            System.out.printf("liveness: %d проверок за %.1f мс (%.2f мс на проверку)%n",
+                    checks, elapsed / 1e6, elapsed / 1e6 / checks);
+            for (CompositeLivenessProbe.Stats stats : race.getStats()) {
+                System.out.println("  " + stats);
+            }
+            return complete;
+        } finally {
+            for (ServerSocketChannel server : servers) {
+                server.close();
+            }
+        }
+    }
+}
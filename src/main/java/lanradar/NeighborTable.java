@@ -0,0 +1,563 @@
+package lanradar;
+
+import org.apache.commons.lang3.SystemUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.Inet4Address;
+import java.net.InterfaceAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Снимок таблицы соседей ОС (ARP-кэша): IPv4-адрес → MAC-адрес.
+ * <p>
+ * Таблица читается целиком за одно обращение: в Linux — командой "ip -s -4 neigh show" (а без iproute2 —
+ * из /proc/net/arp), на остальных системах — одним вызовом "arp -a"; к ней добавляются адреса локальных
+ * интерфейсов из {@link NetworkInterface}. Все запросы обслуживаются из последнего снимка.
+ * <p>
+ * Для каждой записи хранится время последнего подтверждения доступности. В Linux его сообщает само ядро:
+ * "ip -s neigh" выводит для записи, сколько секунд назад сосед подтвердил доступность (ответом ARP
+ * или продвижением TCP-соединения), поэтому свежие записи известны уже после первого чтения и без
+ * собственного пинга. Записи в состоянии PERMANENT и NOARP ядро не проверяет, они считаются
+ * неподтверждёнными. Остальные источники возраст не сообщают: время подтверждения — момент, когда запись
+ * появилась или сменила MAC между чтениями, а записи первого чтения неподтверждены. В обоих случаях
+ * подтверждением служит и успешная активная проверка адреса ({@link #confirm(int)}); локальные адреса
+ * подтверждены всегда.
+ */
+public class NeighborTable {
+
+    private static final Logger logger = LoggerFactory.getLogger(NeighborTable.class);
+    private static final Path PROC_NET_ARP = Path.of("/proc/net/arp");
+    private static final Pattern IPV4 = Pattern.compile("(\\d{1,3}(?:\\.\\d{1,3}){3})");
+    private static final Pattern MAC = Pattern.compile("((?:[0-9A-Fa-f]{1,2}[:-]){5}[0-9A-Fa-f]{1,2})");
+    private static final int ATF_COM = 0x2;
+    private static final long ARP_COMMAND_TIMEOUT_MS = 5000;
+    private static final long LOCAL = Long.MAX_VALUE;
+    private static final List<String> IP_NEIGH_COMMAND = List.of("ip", "-s", "-4", "neigh", "show");
+
+    private final Path procNetArp;
+    private final boolean includeLocal;
+    private volatile boolean useIpCommand;
+    private final ReentrantLock refreshLock = new ReentrantLock();
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    /**
+     * Создаёт таблицу, читающую системный источник.
+     */
+    public NeighborTable() {
+        this(Files.isReadable(PROC_NET_ARP) ? PROC_NET_ARP : null, true);
+    }
+
+    /**
+     * Создаёт таблицу, читающую файл в формате /proc/net/arp (например, тестовый образец).
+     *
+     * @param procNetArp Путь к файлу или null, чтобы использовать команду "arp -a".
+     */
+    public NeighborTable(Path procNetArp) {
+        this(procNetArp, false);
+    }
+
+    private NeighborTable(Path procNetArp, boolean includeLocal) {
+        this.procNetArp = procNetArp;
+        this.includeLocal = includeLocal;
+        this.useIpCommand = includeLocal && SystemUtils.IS_OS_LINUX;
+    }
+
+    /**
+     * Снимок таблицы: отсортированные IP и соответствующие им MAC. Изменяется только время подтверждения.
+     */
+    public static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(new int[0], new long[0], new long[0], 0, 0);
+
+        private final int[] ips;
+        private final long[] macs;
+        private final AtomicLongArray confirmed;
+        private final int size;
+        private final long timestamp;
+
+        private Snapshot(int[] ips, long[] macs, long[] confirmed, int size, long timestamp) {
+            this.ips = ips;
+            this.macs = macs;
+            this.confirmed = new AtomicLongArray(confirmed);
+            this.size = size;
+            this.timestamp = timestamp;
+        }
+
+        /**
+         * Возвращает MAC-адрес для IP.
+         *
+         * @param ipAddress IPv4-адрес в виде int.
+         * @return MAC-адрес в виде 48-битного числа или -1, если записи нет.
+         */
+        public long lookup(int ipAddress) {
+            int idx = Arrays.binarySearch(ips, 0, size, ipAddress);
+            return idx >= 0 ? macs[idx] : -1;
+        }
+
+        /**
+         * Возвращает MAC-адрес для IP, если запись подтверждена не раньше заданного момента.
+         *
+         * @param ipAddress IPv4-адрес в виде int.
+         * @param notBefore Самое раннее допустимое время подтверждения (System.currentTimeMillis).
+         * @return MAC-адрес в виде 48-битного числа или -1, если записи нет или она устарела.
+         */
+        public long lookupFresh(int ipAddress, long notBefore) {
+            int idx = Arrays.binarySearch(ips, 0, size, ipAddress);
+            return idx >= 0 && confirmed.get(idx) >= notBefore ? macs[idx] : -1;
+        }
+
+        /**
+         * Возвращает время последнего подтверждения записи по индексу.
+         *
+         * @param index Индекс записи.
+         * @return Время в миллисекундах, 0 для неподтверждённой записи или Long.MAX_VALUE для локального адреса.
+         */
+        public long confirmedAt(int index) {
+            return confirmed.get(index);
+        }
+
+        /**
+         * Возвращает число записей в снимке.
+         *
+         * @return Число записей.
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Возвращает IP-адрес записи по индексу (записи упорядочены по возрастанию IP).
+         *
+         * @param index Индекс записи.
+         * @return IPv4-адрес в виде int.
+         */
+        public int ipAt(int index) {
+            return ips[index];
+        }
+
+        /**
+         * Возвращает MAC-адрес записи по индексу.
+         *
+         * @param index Индекс записи.
+         * @return MAC-адрес в виде 48-битного числа.
+         */
+        public long macAt(int index) {
+            return macs[index];
+        }
+
+        /**
+         * Возвращает время создания снимка.
+         *
+         * @return Время в миллисекундах (System.currentTimeMillis).
+         */
+        public long getTimestamp() {
+            return timestamp;
+        }
+    }
+
+    /**
+     * Накопитель записей при разборе.
+     */
+    private static final class Builder {
+        private int[] ips = new int[64];
+        private long[] macs = new long[64];
+        private long[] confirmed = new long[64];
+        private int size;
+        private boolean kernelAges;
+
+        void add(long ip, long mac) {
+            add(ip, mac, 0);
+        }
+
+        void add(long ip, long mac, long confirmedAt) {
+            if (ip < 0 || mac <= 0) {
+                return;
+            }
+            if (size == ips.length) {
+                ips = Arrays.copyOf(ips, size * 2);
+                macs = Arrays.copyOf(macs, size * 2);
+                confirmed = Arrays.copyOf(confirmed, size * 2);
+            }
+            ips[size] = (int) ip;
+            macs[size] = mac;
+            confirmed[size] = confirmedAt;
+            size++;
+        }
+
+        Snapshot build() {
+            return build(null);
+        }
+
+        /**
+         * Строит снимок. Если источник сообщил время подтверждения записей ядром, оно и используется;
+         * иначе записи, которых не было в предыдущем снимке или которые сменили MAC, считаются
+         * подтверждёнными в момент построения. Неизменные записи сохраняют более позднее из прежнего
+         * и нового времени подтверждения.
+         *
+         * @param previous Предыдущий снимок или null для первого чтения.
+         */
+        Snapshot build(Snapshot previous) {
+            // Порядок по знаковому значению IP: он нужен только для двоичного поиска
+            long[] packed = new long[size];
+            for (int i = 0; i < size; i++) {
+                packed[i] = ((long) ips[i] << 32) | i;
+            }
+            Arrays.sort(packed);
+            long now = System.currentTimeMillis();
+            int[] sortedIps = new int[size];
+            long[] sortedMacs = new long[size];
+            long[] sortedConfirmed = new long[size];
+            int count = 0;
+            for (long p : packed) {
+                int ip = (int) (p >> 32);
+                if (count > 0 && sortedIps[count - 1] == ip) {
+                    continue;
+                }
+                long mac = macs[(int) p];
+                long confirmedAt = confirmed[(int) p];
+                if (previous != null && confirmedAt != LOCAL) {
+                    int idx = Arrays.binarySearch(previous.ips, 0, previous.size, ip);
+                    if (idx >= 0 && previous.macs[idx] == mac) {
+                        confirmedAt = Math.max(confirmedAt, previous.confirmed.get(idx));
+                    } else if (!kernelAges) {
+                        confirmedAt = now;
+                    }
+                }
+                sortedIps[count] = ip;
+                sortedMacs[count] = mac;
+                sortedConfirmed[count] = confirmedAt;
+                count++;
+            }
+            return new Snapshot(sortedIps, sortedMacs, sortedConfirmed, count, now);
+        }
+    }
+
+    /**
+     * Возвращает текущий снимок таблицы.
+     *
+     * @return Снимок (возможно, пустой).
+     */
+    public Snapshot snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Возвращает MAC-адрес из текущего снимка.
+     *
+     * @param ipAddress IPv4-адрес в виде int.
+     * @return MAC-адрес в виде 48-битного числа или -1, если записи нет.
+     */
+    public long lookup(int ipAddress) {
+        return snapshot.lookup(ipAddress);
+    }
+
+    /**
+     * Возвращает MAC-адрес из текущего снимка, если запись подтверждена не раньше заданного возраста.
+     *
+     * @param ipAddress    IPv4-адрес в виде int.
+     * @param maxAgeMillis Допустимый возраст подтверждения в миллисекундах.
+     * @return MAC-адрес в виде 48-битного числа или -1, если записи нет или она устарела.
+     */
+    public long lookupFresh(int ipAddress, long maxAgeMillis) {
+        return snapshot.lookupFresh(ipAddress, System.currentTimeMillis() - maxAgeMillis);
+    }
+
+    /**
+     * Отмечает успешную активную проверку адреса. Если адреса ещё нет в снимке, он будет считаться
+     * подтверждённым при следующем чтении как новая запись.
+     *
+     * @param ipAddress IPv4-адрес в виде int.
+     */
+    public void confirm(int ipAddress) {
+        Snapshot current = snapshot;
+        int idx = Arrays.binarySearch(current.ips, 0, current.size, ipAddress);
+        if (idx >= 0) {
+            current.confirmed.accumulateAndGet(idx, System.currentTimeMillis(), Math::max);
+        }
+    }
+
+    /**
+     * Перечитывает таблицу соседей целиком.
+     *
+     * @throws IOException          При ошибке чтения источника.
+     * @throws InterruptedException Если поток прерван во время ожидания команды arp.
+     */
+    public void refresh() throws IOException, InterruptedException {
+        refreshLock.lock();
+        try {
+            snapshot = read();
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    /**
+     * Перечитывает таблицу, если снимок старше заданного возраста. Одновременные вызовы
+     * дожидаются одного чтения и используют его результат.
+     *
+     * @param maxAgeMillis Допустимый возраст снимка в миллисекундах.
+     * @throws IOException          При ошибке чтения источника.
+     * @throws InterruptedException Если поток прерван во время ожидания команды arp.
+     */
+    public void refreshIfOlderThan(long maxAgeMillis) throws IOException, InterruptedException {
+        if (System.currentTimeMillis() - snapshot.timestamp <= maxAgeMillis) {
+            return;
+        }
+        refreshLock.lock();
+        try {
+            if (System.currentTimeMillis() - snapshot.timestamp > maxAgeMillis) {
+                snapshot = read();
+            }
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    private Snapshot read() throws IOException, InterruptedException {
+        Builder builder = new Builder();
+        if (includeLocal) {
+            addLocalAddresses(builder);
+        }
+        if (useIpCommand && readIpNeigh(builder)) {
+            builder.kernelAges = true;
+        } else if (procNetArp != null) {
+            try (BufferedReader reader = Files.newBufferedReader(procNetArp, StandardCharsets.US_ASCII)) {
+                parseProcNetArp(reader, builder);
+            }
+        } else {
+            Charset charset = SystemUtils.IS_OS_WINDOWS ? Charset.defaultCharset() : StandardCharsets.UTF_8;
+            run(List.of("arp", "-a"), charset, reader -> parseArpOutput(reader, builder));
+        }
+        Snapshot previous = snapshot;
+        return builder.build(previous == Snapshot.EMPTY ? null : previous);
+    }
+
+    /**
+     * Читает таблицу командой ip. Если команды нет, источник отключается до конца работы.
+     *
+     * @return true, если таблица прочитана.
+     */
+    private boolean readIpNeigh(Builder builder) throws InterruptedException {
+        try {
+            run(IP_NEIGH_COMMAND, StandardCharsets.UTF_8, reader -> parseIpNeigh(reader, builder));
+            return true;
+        } catch (IOException e) {
+            logger.info("Команда ip недоступна ({}), таблица соседей читается без возраста записей", e.getMessage());
+            useIpCommand = false;
+            return false;
+        }
+    }
+
+    /**
+     * Разборщик вывода команды.
+     */
+    @FunctionalInterface
+    private interface OutputParser {
+        void parse(BufferedReader reader) throws IOException;
+    }
+
+    /**
+     * Запускает команду и разбирает её вывод; зависшая команда завершается принудительно.
+     */
+    private static void run(List<String> command, Charset charset, OutputParser parser)
+            throws IOException, InterruptedException {
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), charset))) {
+            parser.parse(reader);
+        } finally {
+            if (!process.waitFor(ARP_COMMAND_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                logger.warn("Команда {} не завершилась за {} мс", String.join(" ", command), ARP_COMMAND_TIMEOUT_MS);
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    /**
+     * Добавляет IPv4-адреса локальных интерфейсов с их MAC-адресами (без loopback и интерфейсов без MAC).
+     * Записи добавляются до записей таблицы соседей и при совпадении IP имеют приоритет.
+     */
+    private static void addLocalAddresses(Builder builder) {
+        try {
+            Enumeration<NetworkInterface> interfaces = NetworkInterface.getNetworkInterfaces();
+            while (interfaces != null && interfaces.hasMoreElements()) {
+                NetworkInterface ni = interfaces.nextElement();
+                if (ni.isLoopback() || !ni.isUp()) {
+                    continue;
+                }
+                byte[] hardware = ni.getHardwareAddress();
+                if (hardware == null || hardware.length != 6) {
+                    continue;
+                }
+                long mac = 0;
+                for (byte b : hardware) {
+                    mac = (mac << 8) | (b & 0xFF);
+                }
+                for (InterfaceAddress address : ni.getInterfaceAddresses()) {
+                    if (address.getAddress() instanceof Inet4Address inet4) {
+                        builder.add(UtilityNetwork.parseIpv4(inet4.getHostAddress()), mac, LOCAL);
+                    }
+                }
+            }
+        } catch (SocketException e) {
+            logger.warn("Не удалось получить адреса локальных интерфейсов: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Разбирает содержимое /proc/net/arp. Неполные записи (без флага ATF_COM) пропускаются.
+     *
+     * @param reader Источник в формате /proc/net/arp (со строкой заголовка).
+     * @return Снимок таблицы.
+     * @throws IOException При ошибке чтения.
+     */
+    static Snapshot parseProcNetArp(BufferedReader reader) throws IOException {
+        Builder builder = new Builder();
+        parseProcNetArp(reader, builder);
+        return builder.build();
+    }
+
+    private static void parseProcNetArp(BufferedReader reader, Builder builder) throws IOException {
+        String line = reader.readLine();
+        while ((line = reader.readLine()) != null) {
+            String[] fields = line.trim().split("\\s+");
+            if (fields.length < 4) {
+                continue;
+            }
+            int flags;
+            try {
+                flags = Integer.decode(fields[2]);
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            if ((flags & ATF_COM) != 0) {
+                builder.add(UtilityNetwork.parseIpv4(fields[0]), parseMacGroups(fields[3]));
+            }
+        }
+    }
+
+    /**
+     * Разбирает вывод команды "ip -s -4 neigh show". Время подтверждения берётся из поля
+     * {@code used <использование>/<подтверждение>/<обновление>} (секунды назад); записи без MAC-адреса
+     * (INCOMPLETE, FAILED) пропускаются, записи PERMANENT и NOARP считаются неподтверждёнными.
+     *
+     * @param reader Вывод команды.
+     * @return Снимок таблицы.
+     * @throws IOException При ошибке чтения.
+     */
+    static Snapshot parseIpNeigh(BufferedReader reader) throws IOException {
+        Builder builder = new Builder();
+        parseIpNeigh(reader, builder);
+        builder.kernelAges = true;
+        return builder.build();
+    }
+
+    private static void parseIpNeigh(BufferedReader reader, Builder builder) throws IOException {
+        long now = System.currentTimeMillis();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            String[] fields = line.trim().split("\\s+");
+            long mac = -1;
+            long confirmedAt = 0;
+            for (int i = 1; i + 1 < fields.length; i++) {
+                if (fields[i].equals("lladdr")) {
+                    mac = parseMacGroups(fields[i + 1]);
+                } else if (fields[i].equals("used")) {
+                    confirmedAt = confirmedAt(fields[i + 1], now);
+                }
+            }
+            String state = fields[fields.length - 1];
+            if (state.equals("PERMANENT") || state.equals("NOARP")) {
+                confirmedAt = 0;
+            }
+            builder.add(UtilityNetwork.parseIpv4(fields[0]), mac, confirmedAt);
+        }
+    }
+
+    /**
+     * Вычисляет время подтверждения по полю "used" вида {@code 12/7/3}: второе число — секунды
+     * с последнего подтверждения доступности соседа.
+     *
+     * @return Время в миллисекундах или 0, если поле не разобрано.
+     */
+    private static long confirmedAt(String used, long now) {
+        String[] parts = used.split("/");
+        if (parts.length < 2) {
+            return 0;
+        }
+        try {
+            return now - TimeUnit.SECONDS.toMillis(Long.parseLong(parts[1]));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Разбирает вывод команды "arp -a" (Windows, macOS, BSD, net-tools).
+     *
+     * @param reader Вывод команды.
+     * @return Снимок таблицы.
+     * @throws IOException При ошибке чтения.
+     */
+    static Snapshot parseArpOutput(BufferedReader reader) throws IOException {
+        Builder builder = new Builder();
+        parseArpOutput(reader, builder);
+        return builder.build();
+    }
+
+    private static void parseArpOutput(BufferedReader reader, Builder builder) throws IOException {
+        Matcher ipMatcher = IPV4.matcher("");
+        Matcher macMatcher = MAC.matcher("");
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (ipMatcher.reset(line).find() && macMatcher.reset(line).find()) {
+                builder.add(UtilityNetwork.parseIpv4(ipMatcher.group(1)), parseMacGroups(macMatcher.group(1)));
+            }
+        }
+    }
+
+    /**
+     * Разбирает MAC-адрес, группы которого могут состоять из одной цифры (формат macOS: "0:1a:2b:3:4d:5e").
+     *
+     * @param mac Строка MAC-адреса с разделителями ':' или '-'.
+     * @return MAC-адрес в виде 48-битного числа или -1, если строка некорректна.
+     */
+    static long parseMacGroups(String mac) {
+        long result = 0;
+        int groups = 0;
+        int group = -1;
+        for (int i = 0; i <= mac.length(); i++) {
+            char c = i < mac.length() ? mac.charAt(i) : ':';
+            if (c == ':' || c == '-') {
+                if (group < 0) {
+                    return -1;
+                }
+                result = (result << 8) | group;
+                groups++;
+                group = -1;
+            } else {
+                int digit = Character.digit(c, 16);
+                if (digit < 0 || group > 0xF) {
+                    return -1;
+                }
+                group = (group < 0 ? 0 : group << 4) | digit;
+            }
+        }
+        return groups == 6 ? result : -1;
+    }
+}
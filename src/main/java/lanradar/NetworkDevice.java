@@ -1,15 +1,14 @@
 package lanradar;
 
-import com.opencsv.CSVReader;
-import com.opencsv.exceptions.CsvException;
-
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.util.List;
+import java.util.Arrays;
+import java.util.Comparator;
 
 /**
  * Представляет сетевое устройство с IP, MAC, производителем, DNS и флагом SNMP.
+ * <p>
+ * IP-адрес хранится как int, MAC-адрес — как 48-битное long, производитель — ссылкой на строку из общей
+ * таблицы OUI, флаги — битами одного байта. Строковые формы IP и MAC создаются только при запросе
+ * (для отображения), поэтому сравнения выполняются над числами без разбора строк.
  */
 public class NetworkDevice {
 
@@ -20,21 +19,56 @@ public class NetworkDevice {
         NORMAL, NEW, CHANGED, LOST
     }
 
-    private String ipAddress;
+    /** Бит маски изменений: MAC-адрес. */
+    public static final int CHANGED_MAC = 1;
+    /** Бит маски изменений: DNS-имя. */
+    public static final int CHANGED_DNS = 1 << 1;
+    /** Бит маски изменений: доступность SNMP. */
+    public static final int CHANGED_SNMP = 1 << 2;
+    /** Бит маски изменений: статус. */
+    public static final int CHANGED_STATUS = 1 << 3;
+    /** Бит маски изменений: открытые порты. */
+    public static final int CHANGED_PORTS = 1 << 4;
+
+    /** MAC-адрес не определён. */
+    public static final long NO_MAC = -1;
+
+    /**
+     * Порядок устройств по IPv4-адресу как по беззнаковому числу.
+     */
+    public static final Comparator<NetworkDevice> BY_IP = (a, b) -> Integer.compareUnsigned(a.ip, b.ip);
+
+    private static final byte FLAG_SNMP = 1;
+    private static final byte FLAG_ENRICHED = 1 << 1;
+
+    private int ip;
+    private long mac = NO_MAC;
     private String manufacturerName;
-    private String macAddress;
     private String DNSName;
-    private boolean SNMPAvailable;
+    private int[] openPorts;
+    private byte flags;
+    private byte changedFields;
+    private byte unknownFields;
     private DeviceStatus status = DeviceStatus.NORMAL;
     private int scansAsNew = 0;
 
+    /**
+     * Создаёт новое устройство с указанным IP.
+     *
+     * @param ipAddress IPv4-адрес в виде int.
+     */
+    public NetworkDevice(int ipAddress) {
+        this.ip = ipAddress;
+    }
+
     /**
      * Создаёт новое устройство с указанным IP.
      *
      * @param ipAddress IP-адрес устройства.
+     * @throws IllegalArgumentException Если адрес не является IPv4-адресом.
      */
     public NetworkDevice(String ipAddress) {
-        this.ipAddress = ipAddress;
+        this.ip = parseIp(ipAddress);
     }
 
     /**
@@ -43,16 +77,34 @@ public class NetworkDevice {
      * @return IP-адрес.
      */
     public String getIpAddress() {
-        return ipAddress;
+        return UtilityNetwork.formatIpv4(ip);
     }
 
     /**
      * Устанавливает IP-адрес устройства.
      *
      * @param ipAddress IP-адрес.
+     * @throws IllegalArgumentException Если адрес не является IPv4-адресом.
      */
     public void setIpAddress(String ipAddress) {
-        this.ipAddress = ipAddress;
+        this.ip = parseIp(ipAddress);
+    }
+
+    private static int parseIp(String ipAddress) {
+        long parsed = UtilityNetwork.parseIpv4(ipAddress);
+        if (parsed < 0) {
+            throw new IllegalArgumentException("Некорректный IPv4 адрес: " + ipAddress);
+        }
+        return (int) parsed;
+    }
+
+    /**
+     * Возвращает IP-адрес в виде числа.
+     *
+     * @return IPv4-адрес в виде int.
+     */
+    public int getIp() {
+        return ip;
     }
 
     /**
@@ -76,19 +128,37 @@ public class NetworkDevice {
     /**
      * Возвращает MAC-адрес.
      *
-     * @return MAC-адрес.
+     * @return MAC-адрес вида "AA-BB-CC-DD-EE-FF" или null, если не определён.
      */
     public String getMacAddress() {
-        return macAddress;
+        return mac == NO_MAC ? null : UtilityNetwork.formatMac(mac);
     }
 
     /**
      * Устанавливает MAC-адрес.
      *
-     * @param macAddress MAC-адрес.
+     * @param macAddress MAC-адрес или null; некорректная строка сбрасывает адрес.
      */
     public void setMacAddress(String macAddress) {
-        this.macAddress = macAddress;
+        this.mac = macAddress == null ? NO_MAC : UtilityNetwork.parseMac(macAddress);
+    }
+
+    /**
+     * Возвращает MAC-адрес в виде числа.
+     *
+     * @return MAC-адрес в виде 48-битного числа или {@link #NO_MAC}.
+     */
+    public long getMac() {
+        return mac;
+    }
+
+    /**
+     * Устанавливает MAC-адрес в виде числа.
+     *
+     * @param mac MAC-адрес в виде 48-битного числа или {@link #NO_MAC}.
+     */
+    public void setMac(long mac) {
+        this.mac = mac;
     }
 
     /**
@@ -109,13 +179,47 @@ public class NetworkDevice {
         this.DNSName = DNSname;
     }
 
+    /**
+     * Возвращает открытые TCP-порты, найденные {@link PortScanner}.
+     *
+     * @return Порты по возрастанию (массив не изменять) или null, если порты не проверялись.
+     */
+    public int[] getOpenPorts() {
+        return openPorts;
+    }
+
+    /**
+     * Устанавливает открытые TCP-порты.
+     *
+     * @param openPorts Порты по возрастанию или null.
+     */
+    public void setOpenPorts(int[] openPorts) {
+        this.openPorts = openPorts == null ? null : openPorts.clone();
+    }
+
+    /**
+     * Возвращает открытые порты в виде строки для отображения.
+     *
+     * @return Порты через запятую или пустая строка.
+     */
+    public String getOpenPortsText() {
+        if (openPorts == null) {
+            return "";
+        }
+        StringBuilder text = new StringBuilder();
+        for (int port : openPorts) {
+            text.append(text.length() == 0 ? "" : ", ").append(port);
+        }
+        return text.toString();
+    }
+
     /**
      * Возвращает флаг доступности SNMP.
      *
      * @return true, если SNMP доступен.
      */
     public boolean getSNMPAvailable() {
-        return SNMPAvailable;
+        return (flags & FLAG_SNMP) != 0;
     }
 
     /**
@@ -124,7 +228,7 @@ public class NetworkDevice {
      * @param SNMPAvailable true, если SNMP доступен.
      */
     public void setSNMPAvailable(boolean SNMPAvailable) {
-        this.SNMPAvailable = SNMPAvailable;
+        setFlag(FLAG_SNMP, SNMPAvailable);
     }
 
     /**
@@ -163,6 +267,87 @@ public class NetworkDevice {
         this.scansAsNew = scansAsNew;
     }
 
+    /**
+     * Возвращает признак завершённого дозаполнения (все стадии отработали; см. также {@link #isKnown(int)}).
+     *
+     * @return true, если все стадии {@link EnrichmentPipeline} завершены.
+     */
+    public boolean isEnriched() {
+        return (flags & FLAG_ENRICHED) != 0;
+    }
+
+    /**
+     * Устанавливает признак завершённого дозаполнения.
+     *
+     * @param enriched true, если все стадии завершены.
+     */
+    public void setEnriched(boolean enriched) {
+        setFlag(FLAG_ENRICHED, enriched);
+    }
+
+    /**
+     * Проверяет, определено ли поле дозаполнением. Пустое DNS-имя или сброшенный флаг SNMP означают
+     * «нет имени» или «нет SNMP» только у определённого поля; поле, задача которого была отброшена
+     * из-за переполненной очереди стадии, остаётся неизвестным.
+     *
+     * @param field Бит {@code CHANGED_DNS} или {@code CHANGED_SNMP}.
+     * @return true, если дозаполнение завершено и поле определено.
+     */
+    public boolean isKnown(int field) {
+        return isEnriched() && (unknownFields & field) == 0;
+    }
+
+    /**
+     * Отмечает поля, которые дозаполнение не определило.
+     *
+     * @param fields Биты {@code CHANGED_*}.
+     */
+    public void markUnknown(int fields) {
+        unknownFields = (byte) (unknownFields | fields);
+    }
+
+    /**
+     * Возвращает маску полей, которые дозаполнение не определило.
+     *
+     * @return Биты {@code CHANGED_*}.
+     */
+    public int getUnknownFields() {
+        return unknownFields;
+    }
+
+    /**
+     * Устанавливает маску полей, которые дозаполнение не определило.
+     *
+     * @param fields Биты {@code CHANGED_*}.
+     */
+    public void setUnknownFields(int fields) {
+        unknownFields = (byte) fields;
+    }
+
+    private void setFlag(byte flag, boolean value) {
+        flags = (byte) (value ? flags | flag : flags & ~flag);
+    }
+
+    /**
+     * Отмечает поля как изменившиеся.
+     *
+     * @param fields Биты {@code CHANGED_*}.
+     */
+    public void markChanged(int fields) {
+        changedFields = (byte) (changedFields | fields);
+    }
+
+    /**
+     * Сбрасывает маску изменений и возвращает её прежнее значение.
+     *
+     * @return Маска изменений до сброса.
+     */
+    public int clearChangedFields() {
+        int fields = changedFields;
+        changedFields = 0;
+        return fields;
+    }
+
     /**
      * Возвращает строковое представление устройства.
      *
@@ -170,40 +355,26 @@ public class NetworkDevice {
      */
     @Override
     public String toString() {
-        return String.format("NetworkDevice{ip='%s', mac='%s', manufacturer='%s', DNS='%s', SNMP='%s'}",
-                ipAddress, macAddress, manufacturerName, DNSName, SNMPAvailable);
+        return String.format("NetworkDevice{ip='%s', mac='%s', manufacturer='%s', DNS='%s', SNMP='%s', ports=%s}",
+                getIpAddress(), getMacAddress(), manufacturerName, DNSName, getSNMPAvailable(), Arrays.toString(openPorts));
     }
 
     /**
-     * Определяет производителя по MAC-адресу, читая данные из файла ouiMAC.csv.
+     * Определяет производителя по MAC-адресу. Используется скомпилированная таблица ouiMAC.bin,
+     * а при её отсутствии — индекс, построенный по ouiMAC.csv. Сохраняется ссылка на строку
+     * из таблицы, поэтому устройства одного производителя делят один экземпляр имени.
      *
      * @param device Объект устройства.
-     * @throws IOException  Если произошла ошибка ввода/вывода.
-     * @throws CsvException Если произошла ошибка при парсинге CSV.
      */
-    public static void findManufacturerName(NetworkDevice device) throws IOException, CsvException {
-        String macAddress = device.getMacAddress();
-        if (macAddress == null) {
+    public static void findManufacturerName(NetworkDevice device) {
+        long mac = device.getMac();
+        if (mac == NO_MAC) {
             return;
         }
-        macAddress = macAddress.replaceAll("[:\\-]", "").toUpperCase();
-
-        try (InputStream inputStream = UtilityNetwork.class.getResourceAsStream("/ouiMAC.csv");
-             CSVReader reader = new CSVReader(new InputStreamReader(inputStream))) {
-            if (inputStream == null) {
-                return;
-            }
-            List<String[]> lines = reader.readAll();
-            for (String[] line : lines) {
-                if (line.length >= 3) {
-                    String oui = line[1];
-                    String organizationName = line[2];
-                    if (macAddress.startsWith(oui)) {
-                        device.setManufacturerName(organizationName);
-                        break;
-                    }
-                }
-            }
+        OuiDatabase database = OuiDatabase.getInstance();
+        String organizationName = database != null ? database.lookup(mac) : OuiIndex.getInstance().lookup(mac);
+        if (organizationName != null) {
+            device.setManufacturerName(organizationName);
         }
     }
 }
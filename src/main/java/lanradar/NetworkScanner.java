@@ -1,17 +1,19 @@
 package lanradar;
 
-import com.opencsv.exceptions.CsvException;
-import org.apache.commons.lang3.SystemUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.net.*;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
 import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
 
 /**
  * Содержит методы для сканирования сети.
@@ -19,55 +21,89 @@ import java.util.concurrent.*;
 public class NetworkScanner {
     private static final Logger logger = LoggerFactory.getLogger(NetworkScanner.class);
     private static final int PING_TIMEOUT_MS = 400;
-    private static final int MAX_PING_ATTEMPTS = 3;
+    private static final int MAX_PING_ATTEMPTS = Integer.getInteger("lanradar.liveness.attempts", 2);
+    private static final long NEIGHBOR_TABLE_MAX_AGE_MS = 1000;
+    private static final long NEIGHBOR_FRESH_MS =
+            TimeUnit.SECONDS.toMillis(Long.getLong("lanradar.neighbor.maxAgeSeconds", 60));
+    private static final long NEIGHBOR_REPROBE_FRESH_MS =
+            TimeUnit.SECONDS.toMillis(Long.getLong("lanradar.neighbor.reprobeMaxAgeSeconds", 3));
+    private static final NeighborTable neighborTable = new NeighborTable();
+    private static final AdaptiveLimiter probeLimiter = new AdaptiveLimiter(
+            Integer.getInteger("lanradar.probe.initialConcurrency", 64),
+            Integer.getInteger("lanradar.probe.minConcurrency", 4),
+            Integer.getInteger("lanradar.probe.maxConcurrency", 1024),
+            2.0, 0.8);
 
     /**
-     * Ищет устройства в диапазоне IP-адресов.
+     * Ищет устройства в диапазоне IP-адресов. Проверки выполняются на общем {@link ScanEngine}.
      *
      * @param startAddressStr Начальный IPv4-адрес.
      * @param endAddressStr   Конечный IPv4-адрес.
      * @return Список найденных устройств или null при ошибке.
      */
     public static List<NetworkDevice> findDevicesInSubnet(String startAddressStr, String endAddressStr) {
+        List<NetworkDevice> connectedDevices = Collections.synchronizedList(new ArrayList<>());
+        if (!scanSubnet(startAddressStr, endAddressStr, connectedDevices::add)) {
+            return null;
+        }
+        return new ArrayList<>(connectedDevices);
+    }
+
+    /**
+     * Сканирует диапазон IP-адресов и передаёт каждое найденное устройство в приёмник сразу после
+     * завершения его проверки, не дожидаясь остальных адресов. Приёмник вызывается из потоков
+     * сканирования и должен быть потокобезопасным. Метод возвращается после завершения всех проверок.
+     *
+     * @param startAddressStr Начальный IPv4-адрес.
+     * @param endAddressStr   Конечный IPv4-адрес.
+     * @param sink            Приёмник найденных устройств.
+     * @return true, если диапазон просканирован (возможно, прерван); false при некорректных адресах.
+     */
+    public static boolean scanSubnet(String startAddressStr, String endAddressStr, Consumer<NetworkDevice> sink) {
+        Ipv4Range range;
         try {
-            InetAddress startAddress = InetAddress.getByName(startAddressStr);
-            InetAddress endAddress = InetAddress.getByName(endAddressStr);
-            if (startAddress.getAddress().length != 4 || endAddress.getAddress().length != 4) {
-                logger.warn("Некорректные IPv4 адреса (start={}, end={})", startAddressStr, endAddressStr);
-                return null;
-            }
+            range = Ipv4Range.of(startAddressStr, endAddressStr);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Некорректные IPv4 адреса (start={}, end={}): {}", startAddressStr, endAddressStr, e.getMessage());
+            return false;
+        }
+        scanRange(range, sink);
+        return true;
+    }
 
-            List<NetworkDevice> connectedDevices = new ArrayList<>();
-            ExecutorService executor = Executors.newFixedThreadPool(256);
-            List<Future<NetworkDevice>> futures = new ArrayList<>();
+    /**
+     * Сканирует диапазон IP-адресов, передавая найденные устройства в приёмник по мере готовности.
+     * Адреса перебираются лениво, поэтому память под план сканирования не зависит от размера диапазона.
+     *
+     * @param range Диапазон адресов.
+     * @param sink  Потокобезопасный приёмник найденных устройств.
+     */
+    public static void scanRange(Ipv4Range range, Consumer<NetworkDevice> sink) {
+        scanRange(range, sink, device -> { });
+    }
 
-            for (InetAddress currentAddress = startAddress;
-                 !currentAddress.equals(endAddress);
-                 currentAddress = UtilityNetwork.getNextAddress(currentAddress)) {
-                String ipAddress = currentAddress.getHostAddress();
-                Future<NetworkDevice> future = executor.submit(() -> createNetworkDevice(ipAddress));
-                futures.add(future);
-            }
-            Future<NetworkDevice> future = executor.submit(() -> createNetworkDevice(endAddress.getHostAddress()));
-            futures.add(future);
-
-            for (Future<NetworkDevice> f : futures) {
-                try {
-                    NetworkDevice device = f.get();
-                    if (device != null) {
-                        connectedDevices.add(device);
-                    }
-                } catch (CancellationException | InterruptedException ex) {
-                    logger.info("Задача сканирования прервана: {}", ex.getMessage(), ex);
-                } catch (Exception e) {
-                    logger.error("Ошибка при получении результата сканирования: {}", e.getMessage(), e);
-                }
-            }
-            executor.shutdown();
-            return connectedDevices;
-        } catch (UnknownHostException e) {
-            logger.error("Ошибка: некорректные адреса (start={}, end={}), msg={}", startAddressStr, endAddressStr, e.getMessage(), e);
-            return null;
+    /**
+     * Сканирует диапазон IP-адресов, как {@link #scanRange(Ipv4Range, Consumer)}. Устройство передаётся
+     * в приёмник после определения MAC-адреса и производителя; DNS-имя и флаг SNMP определяются на
+     * отдельных стадиях {@link EnrichmentPipeline}, после чего вызывается onUpdate (возможно, уже после
+     * возврата из метода).
+     * <p>
+     * Сначала обрабатываются адреса со свежими записями в таблице соседей (см. {@link #getNeighborTable()}):
+     * они считаются доступными без пинга. Остальные адреса диапазона проверяются активно.
+     *
+     * @param range    Диапазон адресов.
+     * @param sink     Потокобезопасный приёмник найденных устройств.
+     * @param onUpdate Потокобезопасный обработчик дозаполнения уже переданного устройства.
+     */
+    public static void scanRange(Ipv4Range range, Consumer<NetworkDevice> sink, Consumer<NetworkDevice> onUpdate) {
+        refreshNeighborTable();
+        try {
+            int neighbors = scan(range.iterator(), range::contains, sink, onUpdate);
+            logger.debug("Диапазон {} просканирован (из таблицы соседей: {}): {}, {}, {}", range, neighbors,
+                    probeLimiter, CompositeLivenessProbe.getInstance(), EnrichmentPipeline.getInstance());
+        } catch (InterruptedException ex) {
+            logger.info("Сканирование диапазона {} прервано: {}", range, ex.getMessage());
+            Thread.currentThread().interrupt();
         }
     }
 
@@ -78,65 +114,209 @@ public class NetworkScanner {
      * @return Список найденных устройств.
      */
     public static List<NetworkDevice> findDevicesByIPs(List<String> ipAddresses) {
+        List<NetworkDevice> result = Collections.synchronizedList(new ArrayList<>());
+        scanAddresses(ipAddresses, result::add);
+        return new ArrayList<>(result);
+    }
+
+    /**
+     * Сканирует указанный список IP-адресов, передавая найденные устройства в приёмник по мере готовности.
+     *
+     * @param ipAddresses Список IPv4-адресов.
+     * @param sink        Потокобезопасный приёмник найденных устройств.
+     */
+    public static void scanAddresses(List<String> ipAddresses, Consumer<NetworkDevice> sink) {
+        scanAddresses(ipAddresses, sink, device -> { });
+    }
+
+    /**
+     * Сканирует указанный список IP-адресов; DNS-имена и флаг SNMP дозаполняются асинхронно,
+     * как в {@link #scanRange(Ipv4Range, Consumer, Consumer)}.
+     *
+     * @param ipAddresses Список IPv4-адресов.
+     * @param sink        Потокобезопасный приёмник найденных устройств.
+     * @param onUpdate    Потокобезопасный обработчик дозаполнения уже переданного устройства.
+     */
+    public static void scanAddresses(List<String> ipAddresses, Consumer<NetworkDevice> sink,
+                                     Consumer<NetworkDevice> onUpdate) {
         if (ipAddresses == null || ipAddresses.isEmpty()) {
-            return new ArrayList<>();
+            return;
         }
-        List<NetworkDevice> result = new ArrayList<>();
-        ExecutorService executor = Executors.newFixedThreadPool(64);
-        List<Future<NetworkDevice>> futures = new ArrayList<>();
-
-        for (String ip : ipAddresses) {
-            Future<NetworkDevice> future = executor.submit(() -> createNetworkDevice(ip));
-            futures.add(future);
+        int[] ips = ipAddresses.stream()
+                .mapToLong(UtilityNetwork::parseIpv4)
+                .filter(ip -> ip >= 0)
+                .mapToInt(ip -> (int) ip)
+                .toArray();
+        int[] sorted = ips.clone();
+        Arrays.sort(sorted);
+        refreshNeighborTable();
+        try {
+            scan(Arrays.stream(ips).iterator(), ip -> Arrays.binarySearch(sorted, ip) >= 0, sink, onUpdate);
+        } catch (InterruptedException ex) {
+            logger.info("Задача сканирования по списку IP прервана: {}", ex.getMessage());
+            Thread.currentThread().interrupt();
         }
+    }
 
-        for (Future<NetworkDevice> f : futures) {
-            try {
-                NetworkDevice dev = f.get();
-                if (dev != null) {
-                    result.add(dev);
+    /**
+     * Обрабатывает сначала адреса со свежими записями в таблице соседей, затем активно проверяет остальные.
+     *
+     * @param addresses Адреса для сканирования.
+     * @param inScope   Принадлежность адреса к сканируемому множеству.
+     * @return Число адресов, принятых по таблице соседей.
+     * @throws InterruptedException Если поток прерван.
+     */
+    private static int scan(PrimitiveIterator.OfInt addresses, IntPredicate inScope, Consumer<NetworkDevice> sink,
+                            Consumer<NetworkDevice> onUpdate) throws InterruptedException {
+        int[] fresh = freshNeighbors(inScope);
+        ScanEngine engine = ScanEngine.getInstance();
+        engine.forEach(Arrays.stream(fresh).iterator(), ip -> probeInto(ip, sink, onUpdate));
+        PrimitiveIterator.OfInt remaining = fresh.length == 0 ? addresses : new PrimitiveIterator.OfInt() {
+            private int next;
+            private boolean ready;
+
+            @Override
+            public boolean hasNext() {
+                while (!ready && addresses.hasNext()) {
+                    next = addresses.nextInt();
+                    ready = Arrays.binarySearch(fresh, next) < 0;
                 }
-            } catch (CancellationException | InterruptedException ex) {
-                logger.info("Задача сканирования по списку IP прервана: {}", ex.getMessage(), ex);
-            } catch (Exception e) {
-                logger.error("Ошибка при создании объекта NetworkDevice: {}", e.getMessage(), e);
+                return ready;
+            }
+
+            @Override
+            public int nextInt() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                ready = false;
+                return next;
+            }
+        };
+        engine.forEach(remaining, ip -> probeInto(ip, sink, onUpdate));
+        return fresh.length;
+    }
+
+    /**
+     * Возвращает адреса из текущего снимка таблицы соседей, подтверждённые не раньше
+     * {@code lanradar.neighbor.maxAgeSeconds} секунд назад (по умолчанию 60; 0 отключает быстрый путь).
+     *
+     * @param inScope Фильтр адресов.
+     * @return Адреса в порядке снимка (по возрастанию знакового значения).
+     */
+    private static int[] freshNeighbors(IntPredicate inScope) {
+        if (NEIGHBOR_FRESH_MS <= 0) {
+            return new int[0];
+        }
+        NeighborTable.Snapshot snapshot = neighborTable.snapshot();
+        long notBefore = System.currentTimeMillis() - NEIGHBOR_FRESH_MS;
+        int[] result = new int[snapshot.size()];
+        int count = 0;
+        for (int i = 0; i < snapshot.size(); i++) {
+            int ip = snapshot.ipAt(i);
+            if (snapshot.confirmedAt(i) >= notBefore && inScope.test(ip)) {
+                result[count++] = ip;
             }
         }
-        executor.shutdown();
-        return result;
+        return Arrays.copyOf(result, count);
     }
 
     /**
-     * Создаёт устройство, если IP-адрес отвечает на пинг.
+     * Проверяет адрес и ставит ответившее устройство в {@link EnrichmentPipeline}. Задача сканирования
+     * ждёт только определения MAC-адреса и производителя; DNS-имя и флаг SNMP дописываются позже.
      *
-     * @param ipAddress IPv4-адрес для проверки.
-     * @return Объект NetworkDevice, если устройство доступно; иначе null.
+     * @param ipAddress IPv4-адрес в виде int.
+     * @param sink      Приёмник найденных устройств.
+     * @param onUpdate  Обработчик дозаполнения уже переданного устройства.
      */
-    private static NetworkDevice createNetworkDevice(String ipAddress) {
+    private static void probeInto(int ipAddress, Consumer<NetworkDevice> sink, Consumer<NetworkDevice> onUpdate) {
+        NetworkDevice device;
         try {
-            InetAddress inetAddress = InetAddress.getByName(ipAddress);
-            boolean isReachable = false;
-            for (int i = 0; i < MAX_PING_ATTEMPTS; i++) {
-                if (inetAddress.isReachable(PING_TIMEOUT_MS)) {
-                    isReachable = true;
-                    break;
-                }
+            device = createNetworkDevice(ipAddress, NEIGHBOR_FRESH_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (device == null) {
+            return;
+        }
+        EnrichmentPipeline.Listener listener = new EnrichmentPipeline.Listener() {
+            @Override
+            public void onDiscovered(NetworkDevice d) {
+                sink.accept(d);
+            }
+
+            @Override
+            public void onUpdated(NetworkDevice d) {
+                onUpdate.accept(d);
             }
-            if (isReachable) {
-                NetworkDevice device = new NetworkDevice(ipAddress);
-                device.setDNSname(inetAddress.getHostName().equals(ipAddress) ? null : inetAddress.getHostName());
+        };
+        try {
+            EnrichmentPipeline.getInstance().submit(device, ipAddress, listener).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.error("Ошибка дозаполнения устройства ({}): {}", device.getIpAddress(), e.getMessage(), e);
+        }
+    }
 
+    /**
+     * Проверяет доступность одного адреса и определяет MAC-адрес и производителя без DNS и SNMP.
+     * Используется для частых повторных проверок известных устройств ({@link ProbeScheduler}), поэтому пинг
+     * заменяет только очень свежая запись таблицы соседей — подтверждённая не раньше
+     * {@code lanradar.neighbor.reprobeMaxAgeSeconds} секунд назад (по умолчанию 3; 0 — пинговать всегда).
+     * Это срок меньше наименьшего интервала повторных проверок, поэтому его обеспечивает подтверждение
+     * ядром (трафик с устройством), а не собственный пинг прошлой проверки.
+     *
+     * @param ipAddress IPv4-адрес в виде int.
+     * @return Устройство с MAC-адресом (или {@link NetworkDevice#NO_MAC}), если адрес ответил; иначе null.
+     * @throws InterruptedException Если поток прерван.
+     */
+    public static NetworkDevice probeHost(int ipAddress) throws InterruptedException {
+        try {
+            neighborTable.refreshIfOlderThan(NEIGHBOR_TABLE_MAX_AGE_MS);
+        } catch (IOException e) {
+            logger.error("Ошибка чтения таблицы соседей: {}", e.getMessage(), e);
+        }
+        NetworkDevice device = createNetworkDevice(ipAddress, NEIGHBOR_REPROBE_FRESH_MS);
+        if (device == null) {
+            return null;
+        }
+        if (device.getMac() == NetworkDevice.NO_MAC) {
+            try {
                 macAddressResolverARP(device);
-                if (device.getMacAddress() == null) {
-                    macAddressResolverNetworkInterface(device);
-                }
-                NetworkDevice.findManufacturerName(device);
-                if (SNMP.isPortSNMPOpen(ipAddress)) {
-                    device.setSNMPAvailable(true);
-                }
-                return device;
+            } catch (IOException e) {
+                logger.error("Ошибка определения MAC ({}): {}", device.getIpAddress(), e.getMessage(), e);
+            }
+        }
+        NetworkDevice.findManufacturerName(device);
+        return device;
+    }
+
+    /**
+     * Создаёт устройство, если у IP-адреса есть достаточно свежая запись в таблице соседей (устройство
+     * считается доступным без пинга и сразу получает MAC-адрес) или если адрес отвечает на пинг.
+     * Остальные поля заполняет {@link EnrichmentPipeline}.
+     *
+     * @param ip          IPv4-адрес для проверки в виде int.
+     * @param freshMillis Допустимый возраст подтверждения записи таблицы соседей; 0 — всегда пинговать.
+     * @return Объект NetworkDevice, если устройство доступно; иначе null.
+     * @throws InterruptedException Если поток прерван во время проверки.
+     */
+    private static NetworkDevice createNetworkDevice(int ip, long freshMillis) throws InterruptedException {
+        long mac = freshMillis > 0 ? neighborTable.lookupFresh(ip, freshMillis) : -1;
+        if (mac >= 0) {
+            NetworkDevice device = new NetworkDevice(ip);
+            device.setMac(mac);
+            return device;
+        }
+        String ipAddress = UtilityNetwork.formatIpv4(ip);
+        try {
+            if (ping(UtilityNetwork.toInetAddress(ip))) {
+                neighborTable.confirm(ip);
+                return new NetworkDevice(ip);
             }
-        } catch (IOException | InterruptedException | CsvException e) {
+        } catch (IOException e) {
             if (e.getMessage() == null || !e.getMessage().contains("no further information")) {
                 logger.error("Ошибка при создании сетевого устройства ({}): {}", ipAddress, e.getMessage(), e);
             }
@@ -144,6 +324,62 @@ public class NetworkScanner {
         return null;
     }
 
+    /**
+     * Проверяет адрес до {@code lanradar.liveness.attempts} раз (по умолчанию 2) гонкой способов
+     * {@link CompositeLivenessProbe} под управлением {@link #getProbeLimiter()}. Для ограничителя ответ
+     * с первой попытки — успех с измеренной задержкой, ответ только на повторную попытку — потеря,
+     * а полное молчание адреса на предел не влияет.
+     *
+     * @param inetAddress Проверяемый адрес.
+     * @return true, если адрес ответил.
+     * @throws IOException          При сетевой ошибке.
+     * @throws InterruptedException Если поток прерван.
+     */
+    private static boolean ping(InetAddress inetAddress) throws IOException, InterruptedException {
+        probeLimiter.acquire();
+        AdaptiveLimiter.Outcome outcome = AdaptiveLimiter.Outcome.IGNORED;
+        long rtt = 0;
+        try {
+            for (int i = 0; i < MAX_PING_ATTEMPTS; i++) {
+                long started = System.nanoTime();
+                if (CompositeLivenessProbe.getInstance().isAlive(inetAddress, PING_TIMEOUT_MS)) {
+                    rtt = System.nanoTime() - started;
+                    outcome = i == 0 ? AdaptiveLimiter.Outcome.SUCCESS : AdaptiveLimiter.Outcome.TIMEOUT;
+                    return true;
+                }
+            }
+            return false;
+        } catch (RuntimeException e) {
+            outcome = AdaptiveLimiter.Outcome.ERROR;
+            throw new IOException(e);
+        } finally {
+            probeLimiter.release(rtt, outcome);
+        }
+    }
+
+    /**
+     * Возвращает адаптивный ограничитель одновременных пингов (текущий предел и наблюдаемую задержку).
+     *
+     * @return Ограничитель проверок доступности.
+     */
+    public static AdaptiveLimiter getProbeLimiter() {
+        return probeLimiter;
+    }
+
+    /**
+     * Возвращает общую таблицу соседей. Запись считается свежей в течение
+     * {@code lanradar.neighbor.maxAgeSeconds} секунд после подтверждения (ядром Linux, а на других системах —
+     * появлением или сменой MAC) или успешного пинга адреса; адреса со свежими записями не пингуются
+     * при сканировании подсети, поэтому отключившееся устройство обнаруживается сканированием не позже
+     * истечения этого срока. Повторные проверки ({@link #probeHost(int)}) принимают только записи
+     * не старше {@code lanradar.neighbor.reprobeMaxAgeSeconds} секунд.
+     *
+     * @return Таблица соседей.
+     */
+    public static NeighborTable getNeighborTable() {
+        return neighborTable;
+    }
+
     /**
      * Определяет MAC-адрес через NetworkInterface.
      *
@@ -155,15 +391,12 @@ public class NetworkScanner {
             NetworkInterface networkInterface = NetworkInterface.getByInetAddress(InetAddress.getByName(ipAddress));
             if (networkInterface != null) {
                 byte[] macBytes = networkInterface.getHardwareAddress();
-                if (macBytes != null) {
-                    StringBuilder macAddress = new StringBuilder();
+                if (macBytes != null && macBytes.length == 6) {
+                    long mac = 0;
                     for (byte b : macBytes) {
-                        macAddress.append(String.format("%02x-", b));
+                        mac = (mac << 8) | (b & 0xFF);
                     }
-                    if (macAddress.length() > 0) {
-                        macAddress.deleteCharAt(macAddress.length() - 1);
-                    }
-                    device.setMacAddress(macAddress.toString().toUpperCase());
+                    device.setMac(mac);
                 }
             }
         } catch (Exception e) {
@@ -172,33 +405,35 @@ public class NetworkScanner {
     }
 
     /**
-     * Определяет MAC-адрес с помощью команды ARP.
+     * Перечитывает таблицу соседей в начале цикла сканирования.
+     */
+    private static void refreshNeighborTable() {
+        try {
+            neighborTable.refresh();
+        } catch (IOException e) {
+            logger.error("Ошибка чтения таблицы соседей: {}", e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Определяет MAC-адрес по снимку таблицы соседей (ARP). Если адреса в снимке нет, таблица
+     * перечитывается не чаще одного раза в {@value #NEIGHBOR_TABLE_MAX_AGE_MS} мс на все потоки сканирования.
      *
      * @param device Объект NetworkDevice.
-     * @throws IOException          При ошибке ввода/вывода.
-     * @throws InterruptedException Если процесс прерван.
+     * @throws IOException          При ошибке чтения таблицы соседей.
+     * @throws InterruptedException Если поток прерван.
      */
     public static void macAddressResolverARP(NetworkDevice device) throws IOException, InterruptedException {
-        String ipAddress = device.getIpAddress();
-        String command;
-        if (SystemUtils.IS_OS_WINDOWS) {
-            command = "arp -a " + ipAddress;
-        } else {
-            command = "arp " + ipAddress;
-        }
-        Process process = Runtime.getRuntime().exec(command);
-        process.waitFor();
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (line.contains(ipAddress)) {
-                    String regexMac = "([0-9A-Fa-f]{2}[:-]){5}([0-9A-Fa-f]{2})";
-                    if (line.matches(".*" + regexMac + ".*")) {
-                        String mac = line.replaceAll(".*(" + regexMac + ").*", "$1");
-                        device.setMacAddress(mac.toUpperCase().replace(":", "-"));
-                    }
-                }
-            }
+        int ipAddress = device.getIp();
+        long mac = neighborTable.lookup(ipAddress);
+        if (mac < 0) {
+            neighborTable.refreshIfOlderThan(NEIGHBOR_TABLE_MAX_AGE_MS);
+            mac = neighborTable.lookup(ipAddress);
+        }
+        if (mac >= 0) {
+            device.setMac(mac);
         }
     }
 }
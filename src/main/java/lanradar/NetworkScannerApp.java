@@ -6,6 +6,7 @@ import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import javafx.collections.transformation.SortedList;
 import javafx.concurrent.Task;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
@@ -20,10 +21,12 @@ import javafx.stage.Stage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import lanradar.NetworkDevice.DeviceStatus;
+import org.snmp4j.smi.OID;
 
 import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * JavaFX-приложение для периодического сканирования сети.
@@ -38,22 +41,50 @@ public class NetworkScannerApp extends Application {
     private Button scanButton;
     private ScheduledExecutorService scheduler;
     private Future<?> fullScanFuture;
-    private Future<?> partialScanFuture;
-    private final Map<String, NetworkDevice> knownDevices = new ConcurrentHashMap<>();
+    private volatile ProbeScheduler probeScheduler;
+    private final Set<NetworkDevice> pendingRows = ConcurrentHashMap.newKeySet();
+    private volatile ScanHistoryLog historyLog;
+    private volatile List<NetworkDevice> warmDevices = List.of();
+    private final FutureTask<Void> restoreTask = new FutureTask<>(this::restoreState, null);
+    private final DeviceDiffEngine diffEngine = new DeviceDiffEngine(event -> {
+        pendingRows.add(event.getDevice());
+        updateDeviceData();
+        ProbeScheduler probes = probeScheduler;
+        if (probes != null) {
+            if (event.getType() == DeviceDiffEngine.EventType.APPEARED) {
+                probes.add(event.getDevice().getIp());
+            }
+            if (event.getType() != DeviceDiffEngine.EventType.SETTLED) {
+                probes.tighten(event.getDevice().getIp());
+            }
+        }
+        ScanHistoryLog log = historyLog;
+        if (log != null) {
+            log.append(event);
+        }
+    });
+    private TableColumn<NetworkDevice, NetworkDevice> ipColumn;
     private static final int FULL_SCAN_PERIOD = 30;
-    private static final int PARTIAL_SCAN_PERIOD = 5;
-    private boolean scanning = false;
-    private boolean firstScan = true;
+    private static final int WALK_BUFFER_CHARS = 256 * 1024;
+    private final AtomicBoolean tableRefreshPending = new AtomicBoolean();
+    private final ExecutorService walkViewExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ExecutorService snapshotExecutor =
+            Executors.newSingleThreadExecutor(Thread.ofVirtual().name("snapshot-writer").factory());
+    private volatile boolean scanning = false;
+    private long scanGeneration;
 
     /**
-     * Основной метод запуска JavaFX-приложения.
+     * Основной метод запуска JavaFX-приложения. До показа окна выполняется только построение интерфейса:
+     * фон загружается в фоне, список подсетей и сохранённое состояние (снимок устройств, журнал истории)
+     * читаются на виртуальных потоках, а SNMP и таблица OUI инициализируются при первом обращении.
      *
      * @param primaryStage Главное окно приложения.
      */
     @Override
     public void start(Stage primaryStage) {
+        StartupTrace.mark("fx-start");
         Pane overlayPane = new Pane();
-        Image backgroundImage = new Image("/fon_minimal.png");
+        Image backgroundImage = new Image("/fon_minimal.png", true);
         BackgroundImage bg = new BackgroundImage(
                 backgroundImage,
                 BackgroundRepeat.NO_REPEAT,
@@ -71,7 +102,14 @@ public class NetworkScannerApp extends Application {
 
         subnetComboBox = new ComboBox<>();
         subnetComboBox.setPromptText("Выберите подсеть");
-        subnetComboBox.getItems().addAll(UtilityNetwork.listAdapterSubnets());
+        Thread.ofVirtual().name("list-subnets").start(() -> {
+            List<String> subnets = UtilityNetwork.listAdapterSubnets();
+            Platform.runLater(() -> {
+                if (subnetComboBox.getItems().isEmpty()) {
+                    subnetComboBox.getItems().setAll(subnets);
+                }
+            });
+        });
         subnetComboBox.setPrefHeight(30);
         subnetComboBox.setPrefWidth(150);
         subnetComboBox.valueProperty().addListener((obs, oldVal, newVal) -> {
@@ -124,18 +162,21 @@ public class NetworkScannerApp extends Application {
 
         tableView = new TableView<>();
         tableView.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
-        tableView.setItems(deviceData);
+        // deviceData всегда упорядочен по IP; порядок, выбранный пользователем, применяет SortedList
+        SortedList<NetworkDevice> sortedData = new SortedList<>(deviceData);
+        sortedData.comparatorProperty().bind(tableView.comparatorProperty());
+        tableView.setItems(sortedData);
         tableView.setPlaceholder(new Label("Нет данных для отображения"));
 
-        TableColumn<NetworkDevice, String> ipColumn = new TableColumn<>("IP-адрес");
-        ipColumn.setCellValueFactory(cd -> new SimpleStringProperty(cd.getValue().getIpAddress()));
-        ipColumn.setComparator(this::compareIPs);
+        ipColumn = new TableColumn<>("IP-адрес");
+        ipColumn.setCellValueFactory(cd -> new SimpleObjectProperty<>(cd.getValue()));
+        ipColumn.setComparator(NetworkDevice.BY_IP);
         ipColumn.setCellFactory(col -> new TableCell<>() {
             @Override
-            protected void updateItem(String val, boolean empty) {
-                super.updateItem(val, empty);
+            protected void updateItem(NetworkDevice dev, boolean empty) {
+                super.updateItem(dev, empty);
                 setStyle("-fx-text-fill: black;");
-                setText(empty || val == null ? null : val);
+                setText(empty || dev == null ? null : dev.getIpAddress());
             }
         });
 
@@ -174,6 +215,17 @@ public class NetworkScannerApp extends Application {
             }
         });
 
+        TableColumn<NetworkDevice, String> portsColumn = new TableColumn<>("Порты");
+        portsColumn.setCellValueFactory(cd -> new SimpleStringProperty(cd.getValue().getOpenPortsText()));
+        portsColumn.setCellFactory(col -> new TableCell<>() {
+            @Override
+            protected void updateItem(String val, boolean empty) {
+                super.updateItem(val, empty);
+                setStyle("-fx-text-fill: black;");
+                setText(empty || val == null ? null : val);
+            }
+        });
+
         TableColumn<NetworkDevice, NetworkDevice> snmpColumn = new TableColumn<>("SNMP");
         snmpColumn.setCellValueFactory(cd -> new SimpleObjectProperty<>(cd.getValue()));
         snmpColumn.setCellFactory(col -> new TableCell<>() {
@@ -212,12 +264,21 @@ public class NetworkScannerApp extends Application {
 
         ipColumn.setPrefWidth(120);
         macColumn.setPrefWidth(150);
-        manufacturerColumn.setPrefWidth(430);
+        manufacturerColumn.setPrefWidth(300);
         dnsColumn.setPrefWidth(200);
+        portsColumn.setPrefWidth(130);
         snmpColumn.setPrefWidth(100);
 
-        tableView.getColumns().addAll(ipColumn, macColumn, manufacturerColumn, dnsColumn, snmpColumn);
+        tableView.getColumns().addAll(ipColumn, macColumn, manufacturerColumn, dnsColumn, portsColumn, snmpColumn);
         tableView.setRowFactory(tv -> new TableRow<>() {
+            {
+                setOnMouseClicked(evt -> {
+                    if (evt.getButton() == MouseButton.PRIMARY && evt.getClickCount() == 2 && !isEmpty()) {
+                        showHistoryWindow(getItem());
+                    }
+                });
+            }
+
             @Override
             protected void updateItem(NetworkDevice dev, boolean empty) {
                 super.updateItem(dev, empty);
@@ -260,11 +321,36 @@ public class NetworkScannerApp extends Application {
         primaryStage.setTitle("LAN Radar");
         primaryStage.setScene(scene);
         primaryStage.show();
+        Platform.runLater(() -> StartupTrace.mark("window"));
+        Thread.ofVirtual().name("restore-state").start(restoreTask);
+    }
 
+    /**
+     * Читает снимок устройств и открывает журнал истории. Выполняется в фоне после показа окна.
+     */
+    private void restoreState() {
         try {
-            SNMP.initSnmp();
+            warmDevices = DeviceSnapshot.read(DeviceSnapshot.defaultPath());
         } catch (IOException e) {
-            logger.error("Ошибка инициализации SNMP: {}", e.getMessage(), e);
+            logger.error("Ошибка чтения снимка устройств: {}", e.getMessage(), e);
+        }
+        try {
+            historyLog = ScanHistoryLog.openDefault();
+        } catch (IOException e) {
+            logger.error("Ошибка открытия журнала истории: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Дожидается восстановления сохранённого состояния (обычно уже завершённого к моменту запроса).
+     */
+    private void awaitRestore() {
+        try {
+            restoreTask.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.error("Ошибка восстановления состояния: {}", e.getMessage(), e);
         }
     }
 
@@ -313,6 +399,10 @@ public class NetworkScannerApp extends Application {
             int col = cellPos.getColumn();
             Object cellValue = tableView.getColumns().get(col).getCellData(row);
             if (cellValue == null) cellValue = "";
+            if (cellValue instanceof NetworkDevice dev) {
+                cellValue = tableView.getColumns().get(col) == ipColumn ? dev.getIpAddress()
+                        : (dev.getSNMPAvailable() ? "Да" : "Нет");
+            }
             if (row == prevRow) {
                 sb.append("\t");
             } else if (prevRow != -1) {
@@ -373,19 +463,79 @@ public class NetworkScannerApp extends Application {
                 return;
             }
             scanning = true;
-            firstScan = true;
-            knownDevices.clear();
+            diffEngine.clear();
+            pendingRows.clear();
             deviceData.clear();
             scanButton.setText("Остановить сканирование");
             subnetComboBox.setDisable(true);
             manualSubnetField.setDisable(true);
-            startPeriodicScan();
+            prepareScan(finalSubnet, ++scanGeneration);
         } else {
             scanning = false;
             scanButton.setText("Сканировать");
             subnetComboBox.setDisable(false);
             manualSubnetField.setDisable(false);
             stopPeriodicScan();
+            saveSnapshot();
+        }
+    }
+
+    /**
+     * Готовит движок изменений к сканированию подсети и запускает периодическое сканирование. Ожидание
+     * восстановленного состояния (чтение снимка и восстановление журнала истории) и отбор устройств подсети
+     * из последнего снимка выполняются в фоне; загрузка их в движок, чтобы первое сканирование сразу
+     * сравнивалось с ними, и запуск сканирования — в потоке JavaFX, если сканирование за это время
+     * не остановили. Вызывается в потоке JavaFX.
+     *
+     * @param subnet     Подсеть в формате CIDR.
+     * @param generation Номер запуска сканирования.
+     */
+    private void prepareScan(String subnet, long generation) {
+        Thread.ofVirtual().name("prepare-scan").start(() -> {
+            awaitRestore();
+            List<NetworkDevice> known = new ArrayList<>();
+            try {
+                Ipv4Range range = Ipv4Range.fromCidr(subnet);
+                for (NetworkDevice device : warmDevices) {
+                    if (range.contains(device.getIp())) {
+                        known.add(device);
+                    }
+                }
+            } catch (IllegalArgumentException e) {
+                logger.error("Ошибка при вычислении диапазона ({}): {}", subnet, e.getMessage(), e);
+            }
+            Platform.runLater(() -> {
+                if (!scanning || generation != scanGeneration) {
+                    return;
+                }
+                diffEngine.seed(known);
+                EnrichmentPipeline.getInstance().preload(known);
+                pendingRows.addAll(diffEngine.getDevices());
+                updateDeviceData();
+                startPeriodicScan();
+            });
+        });
+    }
+
+    /**
+     * Сохраняет снимок известных устройств для следующего запуска сканирования. Копия устройств снимается
+     * сразу, а файл пишется в фоне одним потоком, поэтому записи не пересекаются и не задерживают вызывающего.
+     */
+    private void saveSnapshot() {
+        List<NetworkDevice> devices = diffEngine.snapshot();
+        if (devices.isEmpty()) {
+            return;
+        }
+        try {
+            snapshotExecutor.execute(() -> {
+                try {
+                    warmDevices = DeviceSnapshot.merge(DeviceSnapshot.defaultPath(), devices);
+                } catch (IOException e) {
+                    logger.error("Ошибка записи снимка устройств: {}", e.getMessage(), e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.debug("Снимок устройств не сохранён: приложение завершается");
         }
     }
 
@@ -409,7 +559,7 @@ public class NetworkScannerApp extends Application {
      */
     private void startPeriodicScan() {
         if (scheduler == null || scheduler.isShutdown()) {
-            scheduler = Executors.newScheduledThreadPool(2);
+            scheduler = Executors.newScheduledThreadPool(1);
         }
         fullScanFuture = scheduler.scheduleWithFixedDelay(() -> {
             try {
@@ -418,13 +568,11 @@ public class NetworkScannerApp extends Application {
                 logger.error("Полное сканирование прервано или ошибка: {}", ex.getMessage(), ex);
             }
         }, 0, FULL_SCAN_PERIOD, TimeUnit.SECONDS);
-        partialScanFuture = scheduler.scheduleWithFixedDelay(() -> {
-            try {
-                doPartialScan();
-            } catch (Exception ex) {
-                logger.error("Частичное сканирование прервано или ошибка: {}", ex.getMessage(), ex);
-            }
-        }, PARTIAL_SCAN_PERIOD, PARTIAL_SCAN_PERIOD, TimeUnit.SECONDS);
+        ProbeScheduler probes = ProbeScheduler.fromProperties(this::probeHost);
+        probeScheduler = probes;
+        for (NetworkDevice device : diffEngine.getDevices()) {
+            probes.add(device.getIp());
+        }
     }
 
     /**
@@ -435,140 +583,101 @@ public class NetworkScannerApp extends Application {
             if (fullScanFuture != null) {
                 fullScanFuture.cancel(true);
             }
-            if (partialScanFuture != null) {
-                partialScanFuture.cancel(true);
-            }
             scheduler.shutdownNow();
         }
+        ProbeScheduler probes = probeScheduler;
+        probeScheduler = null;
+        if (probes != null) {
+            probes.close();
+        }
     }
 
     /**
-     * Выполняет полное сканирование выбранной подсети.
+     * Выполняет полное сканирование выбранной подсети. Найденные устройства попадают в таблицу
+     * по мере завершения их проверки; таблица обновляется только при изменениях, о которых сообщает
+     * {@link DeviceDiffEngine}.
      */
     private void doFullScan() {
         if (!scanning) return;
         String finalSubnet = getSelectedSubnet();
         if (finalSubnet == null) return;
-        List<String> range = UtilityNetwork.calculateHostRange(finalSubnet);
-        if (range.size() < 2) return;
-        if (!scanning) return;
-
-        List<NetworkDevice> scanned = NetworkScanner.findDevicesInSubnet(range.get(0), range.get(1));
-        if (!scanning) return;
-        if (scanned == null) return;
-        Map<String, NetworkDevice> scannedMap = new HashMap<>();
-        for (NetworkDevice dev : scanned) {
-            scannedMap.put(dev.getIpAddress(), dev);
+        Ipv4Range range;
+        try {
+            range = Ipv4Range.fromCidr(finalSubnet);
+        } catch (IllegalArgumentException e) {
+            logger.error("Ошибка при вычислении диапазона ({}): {}", finalSubnet, e.getMessage(), e);
+            return;
         }
         if (!scanning) return;
 
-        for (String oldIP : knownDevices.keySet()) {
-            if (!scannedMap.containsKey(oldIP)) {
-                NetworkDevice oldDev = knownDevices.get(oldIP);
-                if (oldDev.getStatus() != DeviceStatus.LOST) {
-                    oldDev.setStatus(DeviceStatus.LOST);
-                }
-            }
-        }
-        for (NetworkDevice dev : scanned) {
-            String ip = dev.getIpAddress();
-            NetworkDevice oldDev = knownDevices.get(ip);
-            if (oldDev == null) {
-                if (firstScan) {
-                    dev.setStatus(DeviceStatus.NORMAL);
-                } else {
-                    dev.setStatus(DeviceStatus.NEW);
-                    dev.setScansAsNew(0);
-                }
-                knownDevices.put(ip, dev);
-            } else {
-                if (!Objects.equals(oldDev.getMacAddress(), dev.getMacAddress())) {
-                    dev.setStatus(DeviceStatus.CHANGED);
-                } else {
-                    if (oldDev.getStatus() == DeviceStatus.LOST) {
-                        dev.setStatus(DeviceStatus.NEW);
-                        dev.setScansAsNew(0);
-                    } else {
-                        dev.setStatus(oldDev.getStatus());
-                        dev.setScansAsNew(oldDev.getScansAsNew());
-                    }
-                }
-                knownDevices.put(ip, dev);
-            }
-        }
-        if (firstScan) {
-            firstScan = false;
-        } else {
-            for (NetworkDevice d : knownDevices.values()) {
-                if (d.getStatus() == DeviceStatus.NEW) {
-                    d.setScansAsNew(d.getScansAsNew() + 1);
-                    if (d.getScansAsNew() >= 2) {
-                        d.setStatus(DeviceStatus.NORMAL);
-                    }
-                }
-            }
-        }
+        DeviceDiffEngine.Cycle cycle = diffEngine.beginFullCycle();
+        NetworkScanner.scanRange(range, dev -> {
+            if (scanning) cycle.accept(dev);
+        }, dev -> {
+            if (scanning) cycle.update(dev);
+        });
         if (!scanning) return;
-        updateDeviceData();
+        if (Thread.currentThread().isInterrupted()) return;
+        cycle.end();
+        saveSnapshot();
     }
 
     /**
-     * Выполняет частичное сканирование ранее обнаруженных IP.
+     * Повторно проверяет одно известное устройство по расписанию {@link ProbeScheduler}: только доступность
+     * и MAC-адрес, без DNS и SNMP. Неопределённый MAC-адрес не считается изменением.
+     *
+     * @param ipAddress IPv4-адрес в виде int.
+     * @return MAC-адрес ответившего устройства или {@link ProbeScheduler#DOWN}.
+     * @throws InterruptedException Если поток прерван.
      */
-    private void doPartialScan() {
-        if (!scanning) return;
-        if (knownDevices.isEmpty()) return;
-        String finalSubnet = getSelectedSubnet();
-        if (finalSubnet == null) return;
-
-        List<String> ipList = new ArrayList<>(knownDevices.keySet());
-        List<NetworkDevice> scanned = NetworkScanner.findDevicesByIPs(ipList);
-        if (!scanning) return;
-        if (scanned == null) return;
-        Map<String, NetworkDevice> scannedMap = new HashMap<>();
-        for (NetworkDevice dev : scanned) {
-            scannedMap.put(dev.getIpAddress(), dev);
-        }
-        if (!scanning) return;
-        for (String oldIP : knownDevices.keySet()) {
-            if (!scannedMap.containsKey(oldIP)) {
-                NetworkDevice oldDev = knownDevices.get(oldIP);
-                oldDev.setStatus(DeviceStatus.LOST);
-            }
-        }
-        for (NetworkDevice dev : scanned) {
-            String ip = dev.getIpAddress();
-            NetworkDevice oldDev = knownDevices.get(ip);
-            if (!Objects.equals(oldDev.getMacAddress(), dev.getMacAddress())) {
-                dev.setStatus(DeviceStatus.CHANGED);
-            } else {
-                if (oldDev.getStatus() == DeviceStatus.LOST) {
-                    dev.setStatus(DeviceStatus.NEW);
-                    dev.setScansAsNew(0);
-                } else {
-                    dev.setStatus(oldDev.getStatus());
-                    dev.setScansAsNew(oldDev.getScansAsNew());
-                }
+    private long probeHost(int ipAddress) throws InterruptedException {
+        if (!scanning) return ProbeScheduler.DOWN;
+        DeviceDiffEngine.Cycle cycle = diffEngine.beginPartialCycle(List.of(UtilityNetwork.formatIpv4(ipAddress)));
+        NetworkDevice device = NetworkScanner.probeHost(ipAddress);
+        if (!scanning) return ProbeScheduler.DOWN;
+        if (device != null) {
+            if (device.getMac() == NetworkDevice.NO_MAC) {
+                device.setMac(diffEngine.getMac(ipAddress));
             }
-            knownDevices.put(ip, dev);
+            cycle.accept(device);
         }
-        if (!scanning) return;
-        updateDeviceData();
+        cycle.end();
+        return device == null ? ProbeScheduler.DOWN : device.getMac();
     }
 
     /**
-     * Обновляет данные в таблице (UI).
+     * Запрашивает обновление таблицы. Запросы, поступившие до ближайшего кадра JavaFX,
+     * объединяются в одно обновление.
      */
     private void updateDeviceData() {
-        Platform.runLater(() -> {
-            deviceData.clear();
-            deviceData.addAll(knownDevices.values());
-            tableView.getSortOrder().clear();
-            TableColumn<NetworkDevice, ?> ipColumn = tableView.getColumns().get(0);
-            ipColumn.setSortType(TableColumn.SortType.ASCENDING);
-            tableView.getSortOrder().add(ipColumn);
-            tableView.sort();
-        });
+        if (tableRefreshPending.compareAndSet(false, true)) {
+            Platform.runLater(() -> {
+                tableRefreshPending.set(false);
+                applyDeviceData();
+            });
+        }
+    }
+
+    /**
+     * Применяет к таблице изменения, накопленные с прошлого кадра: новые строки вставляются на место
+     * по IP двоичным поиском, а существующие перерисовываются, только если у устройства есть изменённые
+     * поля (маска {@link DeviceDiffEngine#takeChangedFields(NetworkDevice)}). Стоимость зависит только
+     * от числа изменений, а прокрутка и выделение сохраняются. Вызывается в потоке JavaFX.
+     */
+    private void applyDeviceData() {
+        for (Iterator<NetworkDevice> it = pendingRows.iterator(); it.hasNext(); ) {
+            NetworkDevice dev = it.next();
+            it.remove();
+            int changed = diffEngine.takeChangedFields(dev);
+            int idx = Collections.binarySearch(deviceData, dev, NetworkDevice.BY_IP);
+            if (idx >= 0) {
+                if (changed != 0 || deviceData.get(idx) != dev) {
+                    deviceData.set(idx, dev);
+                }
+            } else {
+                deviceData.add(-idx - 1, dev);
+            }
+        }
     }
 
     /**
@@ -587,84 +696,121 @@ public class NetworkScannerApp extends Application {
     }
 
     /**
-     * Сравнивает два IP-адреса.
+     * Отображает окно с результатами SNMP Walk для заданного IP.
      *
-     * @param ip1 Первый IP.
-     * @param ip2 Второй IP.
-     * @return Отрицательное, если ip1 < ip2, 0 если равны, положительное если ip1 > ip2.
+     * @param ipAddress IPv4-адрес.
      */
-    private int compareIPs(String ip1, String ip2) {
-        int[] p1 = parseIP(ip1);
-        int[] p2 = parseIP(ip2);
-        for (int i = 0; i < 4; i++) {
-            if (p1[i] < p2[i]) return -1;
-            if (p1[i] > p2[i]) return 1;
-        }
-        return 0;
+    private void showSnmpWalkWindow(String ipAddress) {
+        Stage snmpStage = new Stage();
+        snmpStage.initModality(Modality.WINDOW_MODAL);
+        snmpStage.setTitle("SNMP Walk - " + ipAddress);
+        BorderPane pane = new BorderPane();
+        pane.setPadding(new Insets(10));
+        TextArea resultArea = new TextArea();
+        resultArea.setEditable(false);
+
+        Button refreshButton = new Button("Обновить");
+        Task<?>[] walkTask = {startSnmpWalk(ipAddress, resultArea)};
+        refreshButton.setOnAction(e -> {
+            walkTask[0].cancel(true);
+            SnmpWalkCache.getInstance().invalidate(ipAddress);
+            resultArea.clear();
+            walkTask[0] = startSnmpWalk(ipAddress, resultArea);
+        });
+        // Закрытие окна отключает его от обхода; сам обход завершится и останется в кэше
+        snmpStage.setOnHidden(e -> walkTask[0].cancel(true));
+        HBox bottom = new HBox(refreshButton);
+        bottom.setAlignment(Pos.CENTER_RIGHT);
+        bottom.setPadding(new Insets(10, 0, 0, 0));
+        pane.setBottom(bottom);
+        pane.setCenter(resultArea);
+        Scene scene = new Scene(pane, 600, 400);
+        snmpStage.setScene(scene);
+        snmpStage.getIcons().add(new Image("/elogo.png"));
+        snmpStage.show();
     }
 
     /**
-     * Преобразует IP-адрес в массив из 4 чисел.
+     * Отображает окно с историей устройства из журнала: время первого появления его MAC-адреса
+     * и все записанные изменения по этому IP.
      *
-     * @param ip IP-адрес.
-     * @return Массив int из 4 элементов.
+     * @param device Устройство.
      */
-    private int[] parseIP(String ip) {
-        int[] arr = new int[4];
-        String[] tokens = ip.split("\\.");
-        for (int i = 0; i < 4; i++) {
-            if (i < tokens.length) {
-                try {
-                    arr[i] = Integer.parseInt(tokens[i]);
-                } catch (NumberFormatException e) {
-                    arr[i] = 0;
+    private void showHistoryWindow(NetworkDevice device) {
+        Stage historyStage = new Stage();
+        historyStage.initModality(Modality.WINDOW_MODAL);
+        historyStage.setTitle("История - " + device.getIpAddress());
+        BorderPane pane = new BorderPane();
+        pane.setPadding(new Insets(10));
+        TextArea resultArea = new TextArea();
+        resultArea.setEditable(false);
+        pane.setCenter(resultArea);
+        ScanHistoryLog log = historyLog;
+        if (log == null) {
+            resultArea.setText("Журнал истории недоступен.");
+        } else {
+            int ip = device.getIp();
+            long mac = device.getMac();
+            Task<String> historyTask = new Task<>() {
+                @Override
+                protected String call() throws IOException {
+                    StringBuilder sb = new StringBuilder();
+                    long firstSeen = mac == NetworkDevice.NO_MAC ? -1 : log.firstSeen(mac);
+                    if (firstSeen >= 0) {
+                        sb.append(String.format("MAC %s впервые замечен %tF %<tT%n%n", device.getMacAddress(), firstSeen));
+                    }
+                    for (ScanHistoryLog.Record record : log.timeline(ip, 0, Long.MAX_VALUE)) {
+                        sb.append(record).append('\n');
+                    }
+                    return sb.isEmpty() ? "Записей об устройстве нет." : sb.toString();
                 }
-            } else {
-                arr[i] = 0;
-            }
+            };
+            historyTask.setOnSucceeded(e -> resultArea.setText(historyTask.getValue()));
+            historyTask.setOnFailed(e -> resultArea.setText("Ошибка чтения журнала истории: "
+                    + historyTask.getException().getMessage()));
+            walkViewExecutor.execute(historyTask);
         }
-        return arr;
+        Scene scene = new Scene(pane, 600, 400);
+        historyStage.setScene(scene);
+        historyStage.getIcons().add(new Image("/elogo.png"));
+        historyStage.show();
     }
 
     /**
-     * Отображает окно с результатами SNMP Walk для заданного IP.
+     * Запускает вывод результатов SNMP Walk (из кэша или нового обхода) в текстовое поле.
      *
-     * @param ipAddress IPv4-адрес.
+     * @param ipAddress  IPv4-адрес.
+     * @param resultArea Текстовое поле для вывода.
+     * @return Запущенная задача.
      */
-    private void showSnmpWalkWindow(String ipAddress) {
-        Stage snmpStage = new Stage();
-        snmpStage.initModality(Modality.WINDOW_MODAL);
-        snmpStage.setTitle("SNMP Walk - " + ipAddress);
-        BorderPane pane = new BorderPane();
-        pane.setPadding(new Insets(10));
-        TextArea resultArea = new TextArea();
-        resultArea.setEditable(false);
+    private Task<Long> startSnmpWalk(String ipAddress, TextArea resultArea) {
+        WalkTextBuffer output = new WalkTextBuffer(resultArea, WALK_BUFFER_CHARS);
+        Task<Long> walkTask = new Task<>() {
+            @Override
+            protected Long call() throws IOException, InterruptedException {
+                return SnmpWalkCache.getInstance().walk(ipAddress, new OID("1"), vb -> {
+                    try {
+                        output.appendLine(SNMP.formatBinding(vb));
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        throw new CancellationException("SNMP Walk прерван");
+                    }
+                });
+            }
 
-        Task<List<String>> walkTask = new Task<>() {
             @Override
-            protected List<String> call() throws IOException {
-                return SNMP.snmpWalkEntireMIB(ipAddress);
+            protected void cancelled() {
+                output.close();
             }
         };
         walkTask.setOnSucceeded(e -> {
-            List<String> walkResult = walkTask.getValue();
-            if (walkResult != null && !walkResult.isEmpty()) {
-                StringBuilder sb = new StringBuilder();
-                for (String line : walkResult) {
-                    sb.append(line).append("\n");
-                }
-                resultArea.setText(sb.toString());
-            } else {
+            if (walkTask.getValue() == 0) {
                 resultArea.setText("SNMP Walk не дал результатов или произошла ошибка.");
             }
         });
-        walkTask.setOnFailed(e -> resultArea.setText("Ошибка при SNMP Walk: " + walkTask.getException().getMessage()));
-        new Thread(walkTask).start();
-        pane.setCenter(resultArea);
-        Scene scene = new Scene(pane, 600, 400);
-        snmpStage.setScene(scene);
-        snmpStage.getIcons().add(new Image("/elogo.png"));
-        snmpStage.show();
+        walkTask.setOnFailed(e -> resultArea.appendText("Ошибка при SNMP Walk: " + walkTask.getException().getMessage()));
+        walkViewExecutor.execute(walkTask);
+        return walkTask;
     }
 
     /**
@@ -676,7 +822,21 @@ public class NetworkScannerApp extends Application {
     public void stop() throws Exception {
         super.stop();
         stopPeriodicScan();
+        if (scanning) {
+            saveSnapshot();
+        }
+        snapshotExecutor.shutdown();
+        if (!snapshotExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
+            logger.error("Запись снимка устройств не завершилась за 10 с");
+        }
+        walkViewExecutor.shutdownNow();
         SNMP.closeSnmp();
+        awaitRestore();
+        ScanHistoryLog log = historyLog;
+        historyLog = null;
+        if (log != null) {
+            log.close();
+        }
     }
 
     /**
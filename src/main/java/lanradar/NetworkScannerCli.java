@@ -0,0 +1,655 @@
+package lanradar;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Консольный режим без JavaFX: разовое или периодическое сканирование одной или нескольких подсетей
+ * с выводом устройств и изменений в формате JSON Lines.
+ * <p>
+ * Параметры: {@code --cidr <ip/mask>} (можно повторять; по умолчанию подсети активных адаптеров),
+ * {@code --once} (по умолчанию) или {@code --interval <секунды>} для периодического полного сканирования
+ * с повторными проверками по {@link ProbeScheduler}, {@code --out <файл>} (по умолчанию stdout, файл
+ * дописывается) и {@code --buffer <строк>} — ёмкость очереди вывода (по умолчанию 4096). При заполнении
+ * очереди сканирование ждёт вывода, поэтому медленный приёмник не приводит к росту памяти.
+ * Снимок устройств и журнал истории используются так же, как в окне приложения.
+ * <p>
+ * {@code --history <ip>} вместо сканирования выводит из журнала истории все записи об адресе, а вместе
+ * с {@code --at <дата-время>} (например, 2026-10-13T14:00, местное время) — только состояние адреса на этот
+ * момент. Журнал читается без блокировки ({@link ScanHistoryLog#openReadOnly(java.nio.file.Path)}), поэтому
+ * запрос возможен и во время работы окна или консольного сканера.
+ * <p>
+ * Записи: {@code "type":"event"} для каждого изменения ({@link DeviceDiffEngine.EventType}),
+ * {@code "type":"scan"} по завершении полного прохода подсети и {@code "type":"device"} для каждого
+ * устройства по завершении разового сканирования, {@code "type":"history"} для записей журнала
+ * (с временем первого появления MAC-адреса).
+ */
+public final class NetworkScannerCli {
+
+    private static final Logger logger = LoggerFactory.getLogger(NetworkScannerCli.class);
+
+    private static final int DEFAULT_BUFFER_LINES = 4096;
+    private static final long ENRICHMENT_TIMEOUT_MS = 30_000;
+    private static final String USAGE = "Использование: --headless [--cidr <ip/mask>]... [--once | --interval <секунды>]"
+            + " [--out <файл>] [--buffer <строк>]\n"
+            + "       --headless --history <ip> [--at <дата-время>] [--out <файл>]";
+
+    /**
+     * Сканируемая подсеть со своим движком сравнения: полный цикл одной подсети не должен
+     * считать пропавшими устройства другой.
+     */
+    private final class Target {
+        final String cidr;
+        final Ipv4Range range;
+        final DeviceDiffEngine engine;
+
+        Target(String cidr, Ipv4Range range) {
+            this.cidr = cidr;
+            this.range = range;
+            this.engine = new DeviceDiffEngine(event -> onEvent(this, event));
+        }
+    }
+
+    private final List<Target> targets = new ArrayList<>();
+    private final long intervalSeconds;
+    private final Path out;
+    private final int bufferLines;
+    private final long historyIp;
+    private final long historyAt;
+    private final Set<Integer> enriching = ConcurrentHashMap.newKeySet();
+    private JsonLinesWriter writer;
+    private volatile ProbeScheduler probeScheduler;
+    private volatile ScanHistoryLog historyLog;
+    private volatile boolean running = true;
+    private boolean firstScanDone;
+    private volatile boolean firstEventDone;
+
+    private NetworkScannerCli(List<String> cidrs, long intervalSeconds, Path out, int bufferLines,
+                              long historyIp, long historyAt) {
+        for (String cidr : cidrs) {
+            targets.add(new Target(cidr, Ipv4Range.fromCidr(cidr)));
+        }
+        this.intervalSeconds = intervalSeconds;
+        this.out = out;
+        this.bufferLines = bufferLines;
+        this.historyIp = historyIp;
+        this.historyAt = historyAt;
+    }
+
+    /**
+     * Точка входа консольного режима.
+     *
+     * @param args Параметры командной строки (без {@code --headless}).
+     */
+    public static void main(String[] args) {
+        NetworkScannerCli cli;
+        try {
+            cli = parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+        if (cli == null) {
+            System.out.println(USAGE);
+            return;
+        }
+        int code = cli.run();
+        if (cli.running) {
+            // Разовый режим: транспорт SNMP и исполнители не должны удерживать процесс
+            System.exit(code);
+        }
+    }
+
+    /**
+     * Разбирает параметры.
+     *
+     * @param args Параметры командной строки.
+     * @return Настроенный режим или null, если запрошена справка.
+     * @throws IllegalArgumentException При некорректных параметрах.
+     */
+    static NetworkScannerCli parse(String[] args) {
+        List<String> cidrs = new ArrayList<>();
+        long interval = 0;
+        Path out = null;
+        int buffer = DEFAULT_BUFFER_LINES;
+        long historyIp = -1;
+        long historyAt = -1;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "--cidr" -> cidrs.add(value(args, ++i, arg));
+                case "--once" -> interval = 0;
+                case "--interval" -> interval = positive(value(args, ++i, arg), arg);
+                case "--out" -> out = Path.of(value(args, ++i, arg));
+                case "--buffer" -> buffer = (int) positive(value(args, ++i, arg), arg);
+                case "--history" -> historyIp = ipv4(value(args, ++i, arg), arg);
+                case "--at" -> historyAt = localTime(value(args, ++i, arg), arg);
+                case "--help", "-h" -> {
+                    return null;
+                }
+                default -> throw new IllegalArgumentException("Неизвестный параметр: " + arg);
+            }
+        }
+        if (historyAt >= 0 && historyIp < 0) {
+            throw new IllegalArgumentException("Параметр --at используется только с --history");
+        }
+        if (historyIp >= 0) {
+            return new NetworkScannerCli(List.of(), 0, out, buffer, historyIp, historyAt);
+        }
+        if (cidrs.isEmpty()) {
+            cidrs.addAll(UtilityNetwork.listAdapterSubnets());
+            if (cidrs.isEmpty()) {
+                throw new IllegalArgumentException("Не задана подсеть (--cidr) и не найдено активных адаптеров");
+            }
+        }
+        return new NetworkScannerCli(cidrs, interval, out, buffer, -1, -1);
+    }
+
+    private static String value(String[] args, int index, String name) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Не задано значение параметра " + name);
+        }
+        return args[index];
+    }
+
+    private static long positive(String value, String name) {
+        try {
+            long result = Long.parseLong(value);
+            if (result > 0 && result <= Integer.MAX_VALUE) {
+                return result;
+            }
+        } catch (NumberFormatException ignored) {
+        }
+        throw new IllegalArgumentException("Некорректное значение параметра " + name + ": " + value);
+    }
+
+    private static long ipv4(String value, String name) {
+        long ip = UtilityNetwork.parseIpv4(value);
+        if (ip < 0) {
+            throw new IllegalArgumentException("Некорректное значение параметра " + name + ": " + value);
+        }
+        return ip;
+    }
+
+    private static long localTime(String value, String name) {
+        try {
+            return LocalDateTime.parse(value).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Некорректное значение параметра " + name + ": " + value);
+        }
+    }
+
+    /**
+     * Выполняет сканирование до завершения (разовый режим) или до остановки процесса.
+     *
+     * @return Код завершения.
+     */
+    private int run() {
+        try {
+            writer = new JsonLinesWriter(out == null
+                    ? new OutputStreamWriter(new FileOutputStream(FileDescriptor.out), StandardCharsets.UTF_8)
+                    : Files.newBufferedWriter(out, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND), bufferLines);
+        } catch (IOException e) {
+            System.err.println("Не удалось открыть файл вывода: " + e.getMessage());
+            return 1;
+        }
+        if (historyIp >= 0) {
+            return writeHistory();
+        }
+        Thread main = Thread.currentThread();
+        if (intervalSeconds > 0) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                running = false;
+                main.interrupt();
+                try {
+                    main.join(TimeUnit.SECONDS.toMillis(10));
+                } catch (InterruptedException ignored) {
+                }
+            }, "cli-shutdown"));
+        }
+        try {
+            prepare();
+            if (intervalSeconds > 0) {
+                runPeriodic();
+            } else {
+                scanAll();
+                if (!Thread.currentThread().isInterrupted()) {
+                    writeDevices();
+                }
+            }
+            return 0;
+        } catch (InterruptedException e) {
+            return running ? 1 : 0;
+        } finally {
+            shutdown();
+        }
+    }
+
+    private void prepare() {
+        List<NetworkDevice> warm = List.of();
+        try {
+            warm = DeviceSnapshot.read(DeviceSnapshot.defaultPath());
+        } catch (IOException e) {
+            logger.error("Ошибка чтения снимка устройств: {}", e.getMessage(), e);
+        }
+        for (Target target : targets) {
+            target.engine.seed(warm.stream().filter(d -> target.range.contains(d.getIp())).toList());
+        }
+        EnrichmentPipeline.getInstance().preload(warm);
+        try {
+            historyLog = ScanHistoryLog.openDefault();
+        } catch (IOException e) {
+            logger.error("Ошибка открытия журнала истории: {}", e.getMessage(), e);
+        }
+    }
+
+    private void runPeriodic() throws InterruptedException {
+        ProbeScheduler probes = ProbeScheduler.fromProperties(this::probeHost);
+        probeScheduler = probes;
+        for (Target target : targets) {
+            for (NetworkDevice device : target.engine.getDevices()) {
+                probes.add(device.getIp());
+            }
+        }
+        while (running) {
+            scanAll();
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedException();
+            }
+            TimeUnit.SECONDS.sleep(intervalSeconds);
+        }
+    }
+
+    /**
+     * Выполняет полный проход всех подсетей и сохраняет снимок устройств.
+     */
+    private void scanAll() throws InterruptedException {
+        for (Target target : targets) {
+            scan(target);
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+        }
+        saveSnapshot();
+    }
+
+    /**
+     * Полный проход одной подсети. Цикл завершается после дозаполнения найденных устройств
+     * (или по тайм-ауту), чтобы изменения DNS, SNMP и портов попали в тот же проход.
+     */
+    private void scan(Target target) throws InterruptedException {
+        long started = System.nanoTime();
+        DeviceDiffEngine.Cycle cycle = target.engine.beginFullCycle();
+        NetworkScanner.scanRange(target.range, dev -> {
+            synchronized (enriching) {
+                if (!dev.isEnriched()) {
+                    enriching.add(dev.getIp());
+                }
+            }
+            cycle.accept(dev);
+        }, dev -> {
+            cycle.update(dev);
+            synchronized (enriching) {
+                if (dev.isEnriched() && enriching.remove(dev.getIp())) {
+                    enriching.notifyAll();
+                }
+            }
+        });
+        long deadline = System.currentTimeMillis() + ENRICHMENT_TIMEOUT_MS;
+        synchronized (enriching) {
+            long left;
+            while (!enriching.isEmpty() && (left = deadline - System.currentTimeMillis()) > 0) {
+                enriching.wait(left);
+            }
+            enriching.clear();
+        }
+        if (Thread.currentThread().isInterrupted()) {
+            return;
+        }
+        cycle.end();
+        if (!firstScanDone) {
+            firstScanDone = true;
+            StartupTrace.mark("first-scan");
+        }
+        writer.write(new Json("scan")
+                .field("cidr", target.cidr)
+                .field("devices", target.engine.getDevices().size())
+                .field("alive", aliveCount(target))
+                .field("millis", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started))
+                .toString());
+    }
+
+    /**
+     * Число отвечающих (не потерянных) устройств подсети.
+     */
+    private static long aliveCount(Target target) {
+        return target.engine.getDevices().stream().filter(d -> d.getStatus() != NetworkDevice.DeviceStatus.LOST).count();
+    }
+
+    /**
+     * Повторная проверка известного устройства, как в окне приложения.
+     */
+    private long probeHost(int ipAddress) throws InterruptedException {
+        Target target = null;
+        for (Target t : targets) {
+            if (t.range.contains(ipAddress)) {
+                target = t;
+                break;
+            }
+        }
+        if (!running || target == null) return ProbeScheduler.DOWN;
+        DeviceDiffEngine.Cycle cycle = target.engine.beginPartialCycle(List.of(UtilityNetwork.formatIpv4(ipAddress)));
+        NetworkDevice device = NetworkScanner.probeHost(ipAddress);
+        if (!running) return ProbeScheduler.DOWN;
+        if (device != null) {
+            if (device.getMac() == NetworkDevice.NO_MAC) {
+                device.setMac(target.engine.getMac(ipAddress));
+            }
+            cycle.accept(device);
+        }
+        cycle.end();
+        return device == null ? ProbeScheduler.DOWN : device.getMac();
+    }
+
+    private void onEvent(Target target, DeviceDiffEngine.Event event) {
+        if (!firstEventDone) {
+            firstEventDone = true;
+            StartupTrace.mark("first-event");
+        }
+        try {
+            writer.write(device(new Json("event"), target, event.getDevice())
+                    .field("event", event.getType().name())
+                    .value("old", event.getOldValue())
+                    .value("new", event.getNewValue())
+                    .toString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        ProbeScheduler probes = probeScheduler;
+        if (probes != null) {
+            if (event.getType() == DeviceDiffEngine.EventType.APPEARED) {
+                probes.add(event.getDevice().getIp());
+            }
+            if (event.getType() != DeviceDiffEngine.EventType.SETTLED) {
+                probes.tighten(event.getDevice().getIp());
+            }
+        }
+        ScanHistoryLog log = historyLog;
+        if (log != null) {
+            log.append(event);
+        }
+    }
+
+    /**
+     * Выводит записи журнала истории об адресе {@code --history}: все или только состояние на момент {@code --at}.
+     *
+     * @return Код завершения.
+     */
+    private int writeHistory() {
+        try (ScanHistoryLog log = ScanHistoryLog.openDefaultReadOnly()) {
+            int ip = (int) historyIp;
+            List<ScanHistoryLog.Record> records;
+            if (historyAt >= 0) {
+                ScanHistoryLog.Record state = log.stateAt(ip, historyAt);
+                records = state == null ? List.of() : List.of(state);
+            } else {
+                records = log.timeline(ip, 0, Long.MAX_VALUE);
+            }
+            for (ScanHistoryLog.Record record : records) {
+                long firstSeen = record.getMac() == NetworkDevice.NO_MAC ? -1 : log.firstSeen(record.getMac());
+                writer.write(new Json("history")
+                        .field("at", record.getTimestamp())
+                        .field("ip", UtilityNetwork.formatIpv4(record.getIp()))
+                        .field("mac", record.getMac() == NetworkDevice.NO_MAC ? null : UtilityNetwork.formatMac(record.getMac()))
+                        .value("firstSeen", firstSeen < 0 ? null : firstSeen)
+                        .field("event", record.getType().name())
+                        .field("dns", record.getDNSname())
+                        .value("snmp", record.getSNMPAvailable())
+                        .field("status", record.getStatus().name())
+                        .toString());
+            }
+            return 0;
+        } catch (IOException e) {
+            System.err.println("Не удалось прочитать журнал истории: " + e.getMessage());
+            return 1;
+        } catch (InterruptedException e) {
+            return 1;
+        } finally {
+            writer.close();
+        }
+    }
+
+    private void writeDevices() throws InterruptedException {
+        for (Target target : targets) {
+            List<NetworkDevice> devices = new ArrayList<>(target.engine.snapshot());
+            devices.sort(NetworkDevice.BY_IP);
+            for (NetworkDevice device : devices) {
+                writer.write(device(new Json("device"), target, device).toString());
+            }
+        }
+    }
+
+    private static Json device(Json json, Target target, NetworkDevice device) {
+        int[] ports = device.getOpenPorts();
+        return json.field("cidr", target.cidr)
+                .field("ip", device.getIpAddress())
+                .field("mac", device.getMac() == NetworkDevice.NO_MAC ? null : device.getMacAddress())
+                .field("vendor", device.getManufacturerName())
+                .field("dns", device.getDNSname())
+                .value("snmp", device.getSNMPAvailable())
+                .ports(ports)
+                .field("status", device.getStatus().name());
+    }
+
+    private void saveSnapshot() {
+        List<NetworkDevice> devices = new ArrayList<>();
+        for (Target target : targets) {
+            devices.addAll(target.engine.snapshot());
+        }
+        if (devices.isEmpty()) {
+            return;
+        }
+        try {
+            DeviceSnapshot.merge(DeviceSnapshot.defaultPath(), devices);
+        } catch (IOException e) {
+            logger.error("Ошибка записи снимка устройств: {}", e.getMessage(), e);
+        }
+    }
+
+    private void shutdown() {
+        // Прерывание по сигналу остановки не должно мешать сохранению и выводу оставшихся строк
+        Thread.interrupted();
+        ProbeScheduler probes = probeScheduler;
+        probeScheduler = null;
+        if (probes != null) {
+            probes.close();
+        }
+        if (!running) {
+            saveSnapshot();
+        }
+        try {
+            SNMP.closeSnmp();
+        } catch (IOException e) {
+            logger.error("Ошибка закрытия SNMP: {}", e.getMessage(), e);
+        }
+        ScanHistoryLog log = historyLog;
+        historyLog = null;
+        if (log != null) {
+            try {
+                log.close();
+            } catch (IOException e) {
+                logger.error("Ошибка закрытия журнала истории: {}", e.getMessage(), e);
+            }
+        }
+        writer.close();
+    }
+
+    /**
+     * Построитель одной JSON-строки.
+     */
+    private static final class Json {
+        private final StringBuilder sb = new StringBuilder(256);
+
+        Json(String type) {
+            sb.append("{\"type\":\"").append(type).append("\",\"time\":").append(System.currentTimeMillis());
+        }
+
+        Json field(String name, String value) {
+            sb.append(",\"").append(name).append("\":");
+            if (value == null) {
+                sb.append("null");
+            } else {
+                quote(value);
+            }
+            return this;
+        }
+
+        Json field(String name, long value) {
+            sb.append(",\"").append(name).append("\":").append(value);
+            return this;
+        }
+
+        Json value(String name, Object value) {
+            if (value == null || value instanceof Boolean || value instanceof Number) {
+                sb.append(",\"").append(name).append("\":").append(value);
+                return this;
+            }
+            return field(name, value.toString());
+        }
+
+        Json ports(int[] ports) {
+            sb.append(",\"ports\":");
+            if (ports == null) {
+                sb.append("null");
+                return this;
+            }
+            sb.append('[');
+            for (int i = 0; i < ports.length; i++) {
+                sb.append(i == 0 ? "" : ",").append(ports[i]);
+            }
+            sb.append(']');
+            return this;
+        }
+
+        private void quote(String value) {
+            sb.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '"' -> sb.append("\\\"");
+                    case '\\' -> sb.append("\\\\");
+                    case '\n' -> sb.append("\\n");
+                    case '\r' -> sb.append("\\r");
+                    case '\t' -> sb.append("\\t");
+                    default -> {
+                        if (c < 0x20) {
+                            sb.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            sb.append(c);
+                        }
+                    }
+                }
+            }
+            sb.append('"');
+        }
+
+        @Override
+        public String toString() {
+            return sb.append('}').toString();
+        }
+    }
+
+    /**
+     * Вывод строк через ограниченную очередь: сканирующие потоки не ждут медленного приёмника,
+     * пока в очереди есть место, а при её заполнении ждут, не накапливая строки в памяти.
+     */
+    private static final class JsonLinesWriter implements Closeable {
+        private static final String END = new String("");
+
+        private final BlockingQueue<String> queue;
+        private final Writer out;
+        private final Thread thread;
+        private volatile boolean failed;
+
+        JsonLinesWriter(Writer out, int capacity) {
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.out = out instanceof BufferedWriter ? out : new BufferedWriter(out);
+            this.thread = Thread.ofPlatform().name("jsonl-writer").daemon(true).start(this::run);
+        }
+
+        void write(String line) throws InterruptedException {
+            if (!failed) {
+                queue.put(line);
+            }
+        }
+
+        private void run() {
+            try {
+                while (true) {
+                    String line = queue.take();
+                    if (line == END) {
+                        break;
+                    }
+                    if (failed) {
+                        continue;
+                    }
+                    try {
+                        out.write(line);
+                        out.write('\n');
+                        if (queue.isEmpty()) {
+                            out.flush();
+                        }
+                    } catch (IOException e) {
+                        // Приёмник закрыт (например, конвейер оболочки): дальнейшие строки отбрасываются
+                        failed = true;
+                        logger.error("Ошибка вывода JSON Lines: {}", e.getMessage(), e);
+                    }
+                }
+                out.flush();
+            } catch (InterruptedException ignored) {
+            } catch (IOException e) {
+                logger.error("Ошибка вывода JSON Lines: {}", e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                queue.put(END);
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            try {
+                out.close();
+            } catch (IOException e) {
+                logger.error("Ошибка закрытия вывода JSON Lines: {}", e.getMessage(), e);
+            }
+        }
+    }
+}
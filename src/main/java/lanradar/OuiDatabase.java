@@ -0,0 +1,171 @@
+package lanradar;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Таблица производителей, читаемая из двоичного ресурса ouiMAC.bin (см. {@link OuiDatabaseCompiler}).
+ * <p>
+ * Если ресурс лежит в файловой системе, он отображается в память только для чтения; если внутри jar —
+ * копируется в direct-буфер. В куче хранятся только уже запрошенные названия организаций.
+ */
+public final class OuiDatabase {
+
+    private static final Logger logger = LoggerFactory.getLogger(OuiDatabase.class);
+    private static final String RESOURCE = "/ouiMAC.bin";
+    private static final int HEADER_SIZE = 7 * Integer.BYTES;
+
+    private final ByteBuffer buffer;
+    private final int countL;
+    private final int countM;
+    private final int countS;
+    private final int baseL;
+    private final int baseM;
+    private final int baseS;
+    private final int nameOffsets;
+    private final int pool;
+    private final String[] names;
+
+    private OuiDatabase(ByteBuffer buffer) {
+        if (buffer.getInt(0) != OuiDatabaseCompiler.MAGIC || buffer.getInt(4) != OuiDatabaseCompiler.VERSION) {
+            throw new IllegalArgumentException("Неизвестный формат " + RESOURCE);
+        }
+        this.buffer = buffer;
+        this.countL = buffer.getInt(8);
+        this.countM = buffer.getInt(12);
+        this.countS = buffer.getInt(16);
+        int nameCount = buffer.getInt(20);
+        this.baseL = HEADER_SIZE;
+        this.baseM = baseL + countL * 8;
+        this.baseS = baseM + countM * 8;
+        this.nameOffsets = baseS + countS * 12;
+        this.pool = nameOffsets + nameCount * Integer.BYTES;
+        if (pool + buffer.getInt(24) != buffer.limit()) {
+            throw new IllegalArgumentException("Повреждён " + RESOURCE);
+        }
+        this.names = new String[nameCount];
+    }
+
+    /**
+     * Ленивая загрузка общей таблицы.
+     */
+    private static final class Holder {
+        static final OuiDatabase INSTANCE = load();
+    }
+
+    /**
+     * Возвращает общую таблицу производителей.
+     *
+     * @return Таблица или null, если ouiMAC.bin отсутствует (например, при запуске без сборки Maven).
+     */
+    public static OuiDatabase getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Ищет производителя по самому длинному совпадающему префиксу (MA-S, MA-M, затем MA-L).
+     *
+     * @param mac MAC-адрес в виде 48-битного числа.
+     * @return Название организации или null, если префикс не найден.
+     */
+    public String lookup(long mac) {
+        if (mac < 0) {
+            return null;
+        }
+        int id = searchLong(baseS, countS, mac >>> 12);
+        if (id < 0) {
+            id = searchInt(baseM, countM, (int) (mac >>> 20));
+        }
+        if (id < 0) {
+            id = searchInt(baseL, countL, (int) (mac >>> 24));
+        }
+        return id < 0 ? null : name(id);
+    }
+
+    private int searchInt(int base, int count, int prefix) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int value = buffer.getInt(base + mid * 8);
+            if (value < prefix) {
+                low = mid + 1;
+            } else if (value > prefix) {
+                high = mid - 1;
+            } else {
+                return buffer.getInt(base + mid * 8 + 4);
+            }
+        }
+        return -1;
+    }
+
+    private int searchLong(int base, int count, long prefix) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long value = buffer.getLong(base + mid * 12);
+            if (value < prefix) {
+                low = mid + 1;
+            } else if (value > prefix) {
+                high = mid - 1;
+            } else {
+                return buffer.getInt(base + mid * 12 + 8);
+            }
+        }
+        return -1;
+    }
+
+    private String name(int id) {
+        String name = names[id];
+        if (name == null) {
+            int offset = pool + buffer.getInt(nameOffsets + id * Integer.BYTES);
+            int length = Short.toUnsignedInt(buffer.getShort(offset));
+            byte[] bytes = new byte[length];
+            buffer.get(offset + 2, bytes);
+            name = new String(bytes, StandardCharsets.UTF_8);
+            names[id] = name;
+        }
+        return name;
+    }
+
+    /**
+     * Загружает ouiMAC.bin из classpath.
+     *
+     * @return Таблица или null, если ресурс отсутствует или повреждён.
+     */
+    private static OuiDatabase load() {
+        URL url = OuiDatabase.class.getResource(RESOURCE);
+        if (url == null) {
+            logger.info("Ресурс {} не найден, используется ouiMAC.csv", RESOURCE);
+            return null;
+        }
+        try {
+            ByteBuffer buffer;
+            if ("file".equals(url.getProtocol())) {
+                try (FileChannel channel = FileChannel.open(Path.of(url.toURI()), StandardOpenOption.READ)) {
+                    buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                }
+            } else {
+                try (InputStream inputStream = url.openStream()) {
+                    byte[] bytes = inputStream.readAllBytes();
+                    buffer = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+                }
+            }
+            return new OuiDatabase(buffer.asReadOnlyBuffer());
+        } catch (IOException | URISyntaxException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            logger.error("Ошибка при загрузке {}: {}", RESOURCE, e.getMessage(), e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package lanradar;
+
+import com.opencsv.CSVReader;
+import com.opencsv.exceptions.CsvValidationException;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Преобразует ouiMAC.csv в компактный двоичный ресурс ouiMAC.bin. Запускается при сборке (см. pom.xml).
+ * <p>
+ * Формат файла (big-endian):
+ * <pre>
+ * int    magic ('OUI1'), int version
+ * int    число записей MA-L, MA-M, MA-S, число имён, размер пула имён в байтах
+ * MA-L:  (int prefix, int nameId) * n, по возрастанию prefix
+ * MA-M:  (int prefix, int nameId) * n, по возрастанию prefix
+ * MA-S:  (long prefix, int nameId) * n, по возрастанию prefix
+ * int    смещение имени в пуле * число имён
+ * пул:   (unsigned short длина, UTF-8 байты) для каждого уникального имени
+ * </pre>
+ * Адреса организаций в ресурс не попадают.
+ */
+public final class OuiDatabaseCompiler {
+
+    static final int MAGIC = 0x4F554931;
+    static final int VERSION = 1;
+
+    private OuiDatabaseCompiler() {
+    }
+
+    /**
+     * Точка входа сборочного шага.
+     *
+     * @param args Путь к исходному CSV и путь к создаваемому ouiMAC.bin.
+     * @throws IOException            При ошибке чтения или записи.
+     * @throws CsvValidationException При ошибке разбора CSV.
+     */
+    public static void main(String[] args) throws IOException, CsvValidationException {
+        if (args.length != 2) {
+            System.err.println("Использование: OuiDatabaseCompiler <ouiMAC.csv> <ouiMAC.bin>");
+            System.exit(2);
+        }
+        Path source = Path.of(args[0]);
+        Path target = Path.of(args[1]);
+        try (Reader reader = Files.newBufferedReader(source, StandardCharsets.UTF_8)) {
+            int count = compile(reader, target);
+            System.out.println("OUI: " + count + " префиксов записано в " + target);
+        }
+    }
+
+    /**
+     * Компилирует CSV в двоичный файл.
+     *
+     * @param csv    Источник CSV (со строкой заголовка).
+     * @param target Файл назначения.
+     * @return Число записанных префиксов.
+     * @throws IOException            При ошибке записи.
+     * @throws CsvValidationException При ошибке разбора CSV.
+     */
+    static int compile(Reader csv, Path target) throws IOException, CsvValidationException {
+        List<List<long[]>> sections = List.of(new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        Set<Long> seen = new HashSet<>();
+        List<byte[]> names = new ArrayList<>();
+        Map<String, Integer> nameIds = new HashMap<>();
+
+        try (CSVReader reader = new CSVReader(csv)) {
+            String[] line;
+            while ((line = reader.readNext()) != null) {
+                if (line.length < 3) {
+                    continue;
+                }
+                int bits = OuiIndex.prefixBits(line[0]);
+                long prefix = OuiIndex.parseAssignment(line[1], bits);
+                if (bits < 0 || prefix < 0 || !seen.add(((long) bits << 48) | prefix)) {
+                    continue;
+                }
+                Integer id = nameIds.get(line[2]);
+                if (id == null) {
+                    id = names.size();
+                    names.add(truncate(line[2].getBytes(StandardCharsets.UTF_8)));
+                    nameIds.put(line[2], id);
+                }
+                sections.get(bits == 24 ? 0 : bits == 28 ? 1 : 2).add(new long[]{prefix, id});
+            }
+        }
+
+        int total = 0;
+        int poolSize = 0;
+        for (List<long[]> section : sections) {
+            section.sort(Comparator.comparingLong(e -> e[0]));
+            total += section.size();
+        }
+        for (byte[] name : names) {
+            poolSize += 2 + name.length;
+        }
+
+        Files.createDirectories(target.toAbsolutePath().getParent());
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(target)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            for (List<long[]> section : sections) {
+                out.writeInt(section.size());
+            }
+            out.writeInt(names.size());
+            out.writeInt(poolSize);
+            for (int s = 0; s < sections.size(); s++) {
+                for (long[] entry : sections.get(s)) {
+                    if (s < 2) {
+                        out.writeInt((int) entry[0]);
+                    } else {
+                        out.writeLong(entry[0]);
+                    }
+                    out.writeInt((int) entry[1]);
+                }
+            }
+            int offset = 0;
+            for (byte[] name : names) {
+                out.writeInt(offset);
+                offset += 2 + name.length;
+            }
+            for (byte[] name : names) {
+                out.writeShort(name.length);
+                out.write(name);
+            }
+        }
+        return total;
+    }
+
+    private static byte[] truncate(byte[] name) {
+        if (name.length <= 0xFFFF) {
+            return name;
+        }
+        byte[] result = new byte[0xFFFF];
+        System.arraycopy(name, 0, result, 0, result.length);
+        return result;
+    }
+}
@@ -0,0 +1,215 @@
+package lanradar;
+
+import com.opencsv.CSVReader;
+import com.opencsv.exceptions.CsvValidationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Индекс OUI-префиксов производителей, построенный в памяти по файлу ouiMAC.csv.
+ * <p>
+ * Индекс строится один раз при первом обращении и хранит префиксы в виде чисел (long) в открытой хеш-таблице.
+ * Поиск выполняется по самому длинному совпадающему префиксу среди реестров MA-S (36 бит), MA-M (28 бит)
+ * и MA-L (24 бита) и не создаёт объектов.
+ */
+public final class OuiIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(OuiIndex.class);
+    private static final String RESOURCE = "/ouiMAC.csv";
+
+    /**
+     * Длины префиксов в битах в порядке убывания (MA-S, MA-M, MA-L).
+     */
+    private static final int[] PREFIX_BITS = {36, 28, 24};
+
+    private final long[] keys;
+    private final int[] values;
+    private final String[] names;
+    private final int mask;
+    private final int shift;
+    private final int presentBits;
+    private final int size;
+
+    private OuiIndex(long[] keys, int[] values, String[] names, int presentBits, int size) {
+        this.keys = keys;
+        this.values = values;
+        this.names = names;
+        this.mask = keys.length - 1;
+        this.shift = 64 - Integer.numberOfTrailingZeros(keys.length);
+        this.presentBits = presentBits;
+        this.size = size;
+    }
+
+    /**
+     * Ленивая инициализация общего индекса.
+     */
+    private static final class Holder {
+        static final OuiIndex INSTANCE = load();
+    }
+
+    /**
+     * Возвращает общий для процесса индекс, загружая его при первом обращении.
+     *
+     * @return Индекс OUI.
+     */
+    public static OuiIndex getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Ищет производителя по MAC-адресу.
+     *
+     * @param mac MAC-адрес в виде 48-битного числа (см. {@link UtilityNetwork#parseMac(String)}).
+     * @return Название организации или null, если префикс не найден.
+     */
+    public String lookup(long mac) {
+        if (mac < 0 || size == 0) {
+            return null;
+        }
+        for (int bits : PREFIX_BITS) {
+            if ((presentBits & (1 << (bits >>> 2))) == 0) {
+                continue;
+            }
+            long key = key(mac >>> (48 - bits), bits);
+            int idx = slot(key, shift);
+            while (keys[idx] != 0) {
+                if (keys[idx] == key) {
+                    return names[values[idx]];
+                }
+                idx = (idx + 1) & mask;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Возвращает число префиксов в индексе.
+     *
+     * @return Число префиксов.
+     */
+    public int size() {
+        return size;
+    }
+
+    private static int slot(long key, int shift) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+    }
+
+    private static long key(long prefix, int bits) {
+        return ((long) bits << 48) | prefix;
+    }
+
+    /**
+     * Возвращает длину префикса в битах для реестра IEEE.
+     *
+     * @param registry Значение столбца Registry.
+     * @return Длина префикса или -1 для неизвестного реестра.
+     */
+    static int prefixBits(String registry) {
+        switch (registry) {
+            case "MA-L":
+                return 24;
+            case "MA-M":
+                return 28;
+            case "MA-S":
+                return 36;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Разбирает шестнадцатеричное значение столбца Assignment.
+     *
+     * @param assignment Префикс в шестнадцатеричном виде.
+     * @param bits       Ожидаемая длина префикса в битах.
+     * @return Префикс или -1, если значение некорректно.
+     */
+    static long parseAssignment(String assignment, int bits) {
+        if (assignment == null || assignment.length() != bits / 4) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = 0; i < assignment.length(); i++) {
+            int digit = Character.digit(assignment.charAt(i), 16);
+            if (digit < 0) {
+                return -1;
+            }
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+
+    /**
+     * Загружает индекс из ресурса ouiMAC.csv. При ошибке возвращает пустой индекс.
+     *
+     * @return Индекс OUI.
+     */
+    private static OuiIndex load() {
+        List<long[]> entries = new ArrayList<>(40_000);
+        List<String> names = new ArrayList<>();
+        Map<String, Integer> nameIds = new HashMap<>();
+        try (InputStream inputStream = OuiIndex.class.getResourceAsStream(RESOURCE)) {
+            if (inputStream == null) {
+                logger.error("Ресурс {} не найден", RESOURCE);
+                return build(entries, names);
+            }
+            try (CSVReader reader = new CSVReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+                String[] line;
+                while ((line = reader.readNext()) != null) {
+                    if (line.length < 3) {
+                        continue;
+                    }
+                    int bits = prefixBits(line[0]);
+                    long prefix = parseAssignment(line[1], bits);
+                    if (bits < 0 || prefix < 0) {
+                        continue;
+                    }
+                    Integer id = nameIds.get(line[2]);
+                    if (id == null) {
+                        id = names.size();
+                        names.add(line[2]);
+                        nameIds.put(line[2], id);
+                    }
+                    entries.add(new long[]{key(prefix, bits), id});
+                }
+            }
+        } catch (IOException | CsvValidationException e) {
+            logger.error("Ошибка при загрузке {}: {}", RESOURCE, e.getMessage(), e);
+        }
+        return build(entries, names);
+    }
+
+    private static OuiIndex build(List<long[]> entries, List<String> names) {
+        int capacity = Integer.highestOneBit(Math.max(16, entries.size() * 2 - 1)) << 1;
+        long[] keys = new long[capacity];
+        int[] values = new int[capacity];
+        int shift = 64 - Integer.numberOfTrailingZeros(capacity);
+        int presentBits = 0;
+        int size = 0;
+        for (long[] entry : entries) {
+            long key = entry[0];
+            int idx = slot(key, shift);
+            while (keys[idx] != 0 && keys[idx] != key) {
+                idx = (idx + 1) & (capacity - 1);
+            }
+            // При повторе префикса, как и прежде, побеждает первая запись файла
+            if (keys[idx] == 0) {
+                keys[idx] = key;
+                values[idx] = (int) entry[1];
+                presentBits |= 1 << ((int) (key >>> 48) >>> 2);
+                size++;
+            }
+        }
+        return new OuiIndex(keys, values, names.toArray(new String[0]), presentBits, size);
+    }
+}
@@ -0,0 +1,469 @@
+package lanradar;
+
+import com.sun.management.UnixOperatingSystemMXBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Проверка открытых TCP-портов неблокирующими соединениями на одном {@link Selector}.
+ * <p>
+ * Все соединения обслуживает один поток: он начинает подключения, ждёт их завершения и закрывает
+ * просроченные. Одновременно выполняется не более {@code lanradar.ports.maxInFlight} подключений и не более
+ * {@code lanradar.ports.perHost} к одному адресу, новые подключения начинаются не чаще
+ * {@code lanradar.ports.rate} в секунду. Подключение, не завершившееся за {@code lanradar.ports.timeoutMillis},
+ * считается закрытым портом; так как время ожидания у всех подключений одинаковое, сроки хранятся в очереди
+ * в порядке начала и проверяются с её головы.
+ * <p>
+ * Каждое подключение занимает файловый дескриптор, поэтому предел одновременных подключений не превышает
+ * половины свободных дескрипторов процесса. Если сокет всё же не удалось открыть (например, дескрипторы
+ * заняты другими частями программы), порт не считается закрытым: он возвращается в очередь своего адреса,
+ * а новые подключения приостанавливаются с удваивающейся паузой до {@code MAX_BACKOFF_MILLIS}.
+ * <p>
+ * Порты по умолчанию — {@code lanradar.ports.list} (пустой список отключает проверку). UDP-порт 161
+ * проверяется отдельно стадией SNMP {@link EnrichmentPipeline}.
+ */
+public final class PortScanner implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(PortScanner.class);
+
+    private static final String DEFAULT_PORTS = "22,23,80,443,445,3389,8080,9100";
+    private static final int DEFAULT_MAX_IN_FLIGHT = 2048;
+    private static final int DEFAULT_PER_HOST = 16;
+    private static final int DEFAULT_RATE = 2000;
+    private static final int DEFAULT_TIMEOUT_MILLIS = 1000;
+    private static final long MIN_BACKOFF_MILLIS = 10;
+    private static final long MAX_BACKOFF_MILLIS = 1000;
+
+    /**
+     * Проверка всех портов одного адреса. Поля изменяются только потоком селектора.
+     */
+    private static final class HostScan {
+        final int ip;
+        final int[] ports;
+        final CompletableFuture<int[]> result = new CompletableFuture<>();
+        final int[] open;
+        int openCount;
+        int next;
+        int inFlight;
+        int remaining;
+
+        HostScan(int ip, int[] ports) {
+            this.ip = ip;
+            this.ports = ports;
+            this.open = new int[ports.length];
+            this.remaining = ports.length;
+        }
+    }
+
+    /**
+     * Одно подключение.
+     */
+    private static final class Attempt {
+        final HostScan host;
+        final int port;
+        final SocketChannel channel;
+        final long deadlineNanos;
+        boolean done;
+
+        Attempt(HostScan host, int port, SocketChannel channel, long deadlineNanos) {
+            this.host = host;
+            this.port = port;
+            this.channel = channel;
+            this.deadlineNanos = deadlineNanos;
+        }
+    }
+
+    private final int[] defaultPorts;
+    private final int maxInFlight;
+    private final int perHost;
+    private final int rate;
+    private final long timeoutNanos;
+    private final Selector selector;
+    private final Queue<HostScan> submitted = new ConcurrentLinkedQueue<>();
+    private final ArrayDeque<HostScan> active = new ArrayDeque<>();
+    private final ArrayDeque<Attempt> deadlines = new ArrayDeque<>();
+    private final Thread thread;
+    private volatile boolean closed;
+    private volatile int inFlight;
+    private double tokens;
+    private long lastRefillNanos = System.nanoTime();
+    private long backoffMillis;
+    private long resumeNanos;
+    private volatile long started;
+    private volatile long opened;
+    private volatile long refused;
+    private volatile long timedOut;
+    private volatile long deferred;
+
+    /**
+     * Создаёт и запускает сканер портов.
+     *
+     * @param defaultPorts  Порты, проверяемые {@link #scan(int)}.
+     * @param maxInFlight   Максимальное число одновременных подключений (уменьшается до половины свободных
+     *                      файловых дескрипторов).
+     * @param perHost       Максимальное число одновременных подключений к одному адресу.
+     * @param rate          Максимальное число новых подключений в секунду.
+     * @param timeoutMillis Время ожидания подключения.
+     * @throws IOException Если не удалось открыть селектор.
+     */
+    public PortScanner(int[] defaultPorts, int maxInFlight, int perHost, int rate, int timeoutMillis)
+            throws IOException {
+        if (maxInFlight < 1 || perHost < 1 || rate < 1 || timeoutMillis < 1) {
+            throw new IllegalArgumentException("Некорректные параметры сканера портов");
+        }
+        this.defaultPorts = checkPorts(defaultPorts);
+        this.maxInFlight = limitToDescriptors(maxInFlight);
+        this.perHost = perHost;
+        this.rate = rate;
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        this.tokens = rate;
+        this.selector = Selector.open();
+        this.thread = Thread.ofPlatform().name("port-scanner").daemon(true).start(this::run);
+    }
+
+    /**
+     * Ленивая инициализация общего сканера.
+     */
+    private static final class Holder {
+        static final PortScanner INSTANCE = create();
+
+        private static PortScanner create() {
+            String list = System.getProperty("lanradar.ports.list", DEFAULT_PORTS).trim();
+            int[] ports = list.isEmpty() ? new int[0]
+                    : Arrays.stream(list.split(",")).mapToInt(p -> Integer.parseInt(p.trim())).toArray();
+            try {
+                return new PortScanner(ports,
+                        Integer.getInteger("lanradar.ports.maxInFlight", DEFAULT_MAX_IN_FLIGHT),
+                        Integer.getInteger("lanradar.ports.perHost", DEFAULT_PER_HOST),
+                        Integer.getInteger("lanradar.ports.rate", DEFAULT_RATE),
+                        Integer.getInteger("lanradar.ports.timeoutMillis", DEFAULT_TIMEOUT_MILLIS));
+            } catch (IOException e) {
+                logger.error("Ошибка запуска сканера портов: {}", e.getMessage(), e);
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Возвращает общий для приложения сканер портов.
+     *
+     * @return Сканер или null, если селектор не удалось открыть.
+     */
+    public static PortScanner getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Ограничивает число одновременных подключений половиной свободных файловых дескрипторов процесса,
+     * если ОС сообщает их предел.
+     */
+    private static int limitToDescriptors(int maxInFlight) {
+        if (ManagementFactory.getOperatingSystemMXBean() instanceof UnixOperatingSystemMXBean os) {
+            long free = os.getMaxFileDescriptorCount() - os.getOpenFileDescriptorCount();
+            int limit = (int) Math.max(1, Math.min(Integer.MAX_VALUE, free / 2));
+            if (maxInFlight > limit) {
+                logger.info("Предел подключений сканера портов снижен с {} до {} по числу файловых дескрипторов",
+                        maxInFlight, limit);
+                return limit;
+            }
+        }
+        return maxInFlight;
+    }
+
+    private static int[] checkPorts(int[] ports) {
+        for (int port : ports) {
+            if (port < 1 || port > 65535) {
+                throw new IllegalArgumentException("Некорректный TCP-порт: " + port);
+            }
+        }
+        return ports.clone();
+    }
+
+    /**
+     * Возвращает порты, проверяемые по умолчанию.
+     *
+     * @return Копия списка портов.
+     */
+    public int[] getDefaultPorts() {
+        return defaultPorts.clone();
+    }
+
+    /**
+     * Проверяет порты по умолчанию.
+     *
+     * @param ipAddress IPv4-адрес в виде int.
+     * @return Future с открытыми портами по возрастанию.
+     */
+    public CompletableFuture<int[]> scan(int ipAddress) {
+        return scan(ipAddress, defaultPorts);
+    }
+
+    /**
+     * Проверяет заданные порты адреса.
+     *
+     * @param ipAddress IPv4-адрес в виде int.
+     * @param ports     Номера TCP-портов.
+     * @return Future с открытыми портами по возрастанию.
+     */
+    public CompletableFuture<int[]> scan(int ipAddress, int[] ports) {
+        HostScan host = new HostScan(ipAddress, checkPorts(ports));
+        if (ports.length == 0) {
+            host.result.complete(new int[0]);
+            return host.result;
+        }
+        if (closed) {
+            host.result.completeExceptionally(new IOException("Сканер портов остановлен"));
+            return host.result;
+        }
+        submitted.add(host);
+        selector.wakeup();
+        return host.result;
+    }
+
+    private void run() {
+        while (!closed) {
+            try {
+                HostScan host;
+                while ((host = submitted.poll()) != null) {
+                    active.add(host);
+                }
+                long now = System.nanoTime();
+                refill(now);
+                startConnects(now);
+                expire(now);
+                selector.select(selectTimeoutMillis(now));
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    Attempt attempt = (Attempt) key.attachment();
+                    boolean open;
+                    try {
+                        open = attempt.channel.finishConnect();
+                    } catch (IOException e) {
+                        open = false;
+                    }
+                    finish(attempt, open, false);
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.error("Ошибка сканера портов: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    private void refill(long now) {
+        tokens = Math.min(rate, tokens + (now - lastRefillNanos) * rate / 1e9);
+        lastRefillNanos = now;
+    }
+
+    private long selectTimeoutMillis(long now) {
+        long wait = 100;
+        Attempt head = deadlines.peek();
+        if (head != null) {
+            wait = Math.min(wait, TimeUnit.NANOSECONDS.toMillis(head.deadlineNanos - now) + 1);
+        }
+        if (!active.isEmpty() && inFlight < maxInFlight && tokens < 1) {
+            wait = Math.min(wait, (long) Math.ceil((1 - tokens) * 1000 / rate));
+        }
+        if (!active.isEmpty() && resumeNanos - now > 0) {
+            wait = Math.min(wait, TimeUnit.NANOSECONDS.toMillis(resumeNanos - now) + 1);
+        }
+        return Math.max(1, wait);
+    }
+
+    /**
+     * Начинает подключения по кругу между адресами, пока позволяют ограничения и не идёт пауза
+     * после ошибки открытия сокета.
+     */
+    private void startConnects(long now) {
+        if (resumeNanos - now > 0) {
+            return;
+        }
+        int blocked = 0;
+        while (!active.isEmpty() && inFlight < maxInFlight && tokens >= 1 && blocked < active.size()) {
+            HostScan host = active.poll();
+            if (host.next == host.ports.length) {
+                blocked = 0;
+                continue;
+            }
+            if (host.inFlight >= perHost) {
+                active.add(host);
+                blocked++;
+                continue;
+            }
+            blocked = 0;
+            SocketChannel channel = openChannel(now);
+            active.add(host);
+            if (channel == null) {
+                return;
+            }
+            tokens--;
+            connect(host, host.ports[host.next++], channel, now);
+        }
+    }
+
+    /**
+     * Открывает неблокирующий сокет. При ошибке (обычно нехватке дескрипторов) назначает паузу
+     * перед следующими подключениями.
+     *
+     * @return Сокет или null, если открыть его не удалось.
+     */
+    private SocketChannel openChannel(long now) {
+        SocketChannel channel = null;
+        try {
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            backoffMillis = 0;
+            return channel;
+        } catch (IOException e) {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                    // Сокет не использовался
+                }
+            }
+            backoffMillis = Math.min(MAX_BACKOFF_MILLIS, Math.max(MIN_BACKOFF_MILLIS, backoffMillis * 2));
+            resumeNanos = now + TimeUnit.MILLISECONDS.toNanos(backoffMillis);
+            if (deferred++ == 0) {
+                logger.warn("Не удалось открыть сокет ({}), подключения приостановлены на {} мс",
+                        e.getMessage(), backoffMillis);
+            }
+            return null;
+        }
+    }
+
+    private void connect(HostScan host, int port, SocketChannel channel, long now) {
+        host.inFlight++;
+        inFlight++;
+        started++;
+        Attempt attempt = new Attempt(host, port, channel, now + timeoutNanos);
+        try {
+            if (channel.connect(new InetSocketAddress(UtilityNetwork.toInetAddress(host.ip), port))) {
+                finish(attempt, true, false);
+                return;
+            }
+            channel.register(selector, SelectionKey.OP_CONNECT, attempt);
+            deadlines.add(attempt);
+        } catch (IOException e) {
+            // Немедленный отказ в подключении (RST, недоступная сеть): порт закрыт
+            finish(attempt, false, false);
+        }
+    }
+
+    private void expire(long now) {
+        Attempt head;
+        while ((head = deadlines.peek()) != null && (head.done || now - head.deadlineNanos >= 0)) {
+            deadlines.poll();
+            if (!head.done) {
+                finish(head, false, true);
+            }
+        }
+    }
+
+    private void finish(Attempt attempt, boolean open, boolean timeout) {
+        attempt.done = true;
+        if (attempt.channel != null) {
+            try {
+                attempt.channel.close();
+            } catch (IOException e) {
+                logger.debug("Ошибка закрытия соединения: {}", e.getMessage());
+            }
+        }
+        inFlight--;
+        HostScan host = attempt.host;
+        host.inFlight--;
+        if (open) {
+            opened++;
+            host.open[host.openCount++] = attempt.port;
+        } else if (timeout) {
+            timedOut++;
+        } else {
+            refused++;
+        }
+        if (--host.remaining == 0) {
+            int[] result = Arrays.copyOf(host.open, host.openCount);
+            Arrays.sort(result);
+            host.result.complete(result);
+        }
+    }
+
+    /**
+     * Возвращает число выполняющихся подключений.
+     *
+     * @return Число подключений.
+     */
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * Возвращает предел одновременных подключений с учётом файловых дескрипторов.
+     *
+     * @return Предел подключений.
+     */
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Возвращает число случаев, когда сокет не удалось открыть и подключения откладывались.
+     *
+     * @return Число отложенных подключений.
+     */
+    public long getDeferred() {
+        return deferred;
+    }
+
+    /**
+     * Останавливает сканер; незавершённые проверки завершаются с ошибкой.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        selector.wakeup();
+        try {
+            thread.join();
+            selector.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            logger.debug("Ошибка закрытия селектора: {}", e.getMessage());
+        }
+        for (Attempt attempt : deadlines) {
+            try {
+                attempt.channel.close();
+            } catch (IOException e) {
+                logger.debug("Ошибка закрытия соединения: {}", e.getMessage());
+            }
+        }
+        IOException stopped = new IOException("Сканер портов остановлен");
+        for (HostScan host : active) {
+            host.result.completeExceptionally(stopped);
+        }
+        HostScan host;
+        while ((host = submitted.poll()) != null) {
+            host.result.completeExceptionally(stopped);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PortScanner{inFlight=%d, started=%d, open=%d, refused=%d, timedOut=%d, deferred=%d}",
+                inFlight, started, opened, refused, timedOut, deferred);
+    }
+}
@@ -0,0 +1,340 @@
+package lanradar;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Планировщик повторных проверок известных устройств с собственным сроком для каждого адреса.
+ * <p>
+ * Сроки хранятся в хешированном колесе таймеров: массиве ячеек по одному такту, в которых лежат проверки
+ * с совпадающим остатком срока. Каждый такт просматривается одна ячейка, поэтому стоимость не зависит
+ * от общего числа устройств. Интервал стабильного устройства удваивается после каждой проверки
+ * без изменений (до {@code lanradar.probe.maxIntervalSeconds}), а при изменении или по {@link #tighten(int)}
+ * сбрасывается до {@code lanradar.probe.minIntervalSeconds}. Общий темп ограничен корзиной жетонов
+ * ({@code lanradar.probe.budget} проверок в секунду); проверки сверх бюджета ждут следующего такта.
+ */
+public final class ProbeScheduler implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProbeScheduler.class);
+
+    /** Результат проверки неответившего устройства. */
+    public static final long DOWN = Long.MIN_VALUE;
+
+    private static final long DEFAULT_MIN_INTERVAL_SECONDS = 5;
+    private static final long DEFAULT_MAX_INTERVAL_SECONDS = 300;
+    private static final int DEFAULT_BUDGET = 200;
+    private static final long TICK_MILLIS = 100;
+    private static final int WHEEL_SIZE = 1024;
+
+    /**
+     * Проверка одного адреса.
+     */
+    public interface ProbeTask {
+        /**
+         * Проверяет адрес.
+         *
+         * @param ipAddress IPv4-адрес в виде int.
+         * @return Значение, описывающее состояние устройства (например, MAC-адрес) или {@link #DOWN};
+         * изменение значения между проверками считается изменением устройства.
+         * @throws InterruptedException Если поток прерван.
+         */
+        long probe(int ipAddress) throws InterruptedException;
+    }
+
+    /**
+     * Запланированная проверка одного адреса. Поля изменяются под монитором планировщика.
+     */
+    private static final class Entry {
+        final int ip;
+        long intervalMillis;
+        long deadlineTick;
+        long state;
+        boolean probed;
+        boolean scheduled;
+        boolean inFlight;
+        boolean tightened;
+        boolean removed;
+
+        Entry(int ip, long intervalMillis) {
+            this.ip = ip;
+            this.intervalMillis = intervalMillis;
+        }
+    }
+
+    private final ProbeTask task;
+    private final long minIntervalMillis;
+    private final long maxIntervalMillis;
+    private final int budget;
+    private final Map<Integer, Entry> entries = new HashMap<>();
+    private final List<ArrayDeque<Entry>> wheel = new ArrayList<>(WHEEL_SIZE);
+    private final ArrayDeque<Entry> ready = new ArrayDeque<>();
+    private final long startNanos = System.nanoTime();
+    private final Thread timer;
+    private long tick;
+    private double tokens;
+    private long probes;
+    private long changes;
+    private volatile boolean closed;
+
+    /**
+     * Создаёт и запускает планировщик.
+     *
+     * @param task              Проверка адреса; выполняется в {@link ScanEngine}.
+     * @param minIntervalMillis Минимальный интервал между проверками одного адреса.
+     * @param maxIntervalMillis Максимальный интервал между проверками одного адреса.
+     * @param budget            Максимальное число проверок в секунду.
+     */
+    public ProbeScheduler(ProbeTask task, long minIntervalMillis, long maxIntervalMillis, int budget) {
+        if (minIntervalMillis < TICK_MILLIS || maxIntervalMillis < minIntervalMillis || budget < 1) {
+            throw new IllegalArgumentException("Некорректные параметры планировщика проверок");
+        }
+        this.task = task;
+        this.minIntervalMillis = minIntervalMillis;
+        this.maxIntervalMillis = maxIntervalMillis;
+        this.budget = budget;
+        this.tokens = budget;
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel.add(new ArrayDeque<>());
+        }
+        this.timer = Thread.ofVirtual().name("probe-scheduler").start(this::run);
+    }
+
+    /**
+     * Создаёт планировщик с параметрами из свойств {@code lanradar.probe.minIntervalSeconds},
+     * {@code lanradar.probe.maxIntervalSeconds} и {@code lanradar.probe.budget}.
+     *
+     * @param task Проверка адреса.
+     * @return Запущенный планировщик.
+     */
+    public static ProbeScheduler fromProperties(ProbeTask task) {
+        return new ProbeScheduler(task,
+                TimeUnit.SECONDS.toMillis(Long.getLong("lanradar.probe.minIntervalSeconds", DEFAULT_MIN_INTERVAL_SECONDS)),
+                TimeUnit.SECONDS.toMillis(Long.getLong("lanradar.probe.maxIntervalSeconds", DEFAULT_MAX_INTERVAL_SECONDS)),
+                Integer.getInteger("lanradar.probe.budget", DEFAULT_BUDGET));
+    }
+
+    /**
+     * Добавляет адрес. Первая проверка назначается на случайный момент в пределах минимального интервала,
+     * чтобы одновременно добавленные адреса не проверялись одной волной.
+     *
+     * @param ipAddress IPv4-адрес в виде int.
+     */
+    public synchronized void add(int ipAddress) {
+        if (closed || entries.containsKey(ipAddress)) {
+            return;
+        }
+        Entry entry = new Entry(ipAddress, minIntervalMillis);
+        entries.put(ipAddress, entry);
+        schedule(entry, ThreadLocalRandom.current().nextLong(minIntervalMillis));
+    }
+
+    /**
+     * Удаляет адрес. Уже запланированная проверка отбрасывается при наступлении срока.
+     *
+     * @param ipAddress IPv4-адрес в виде int.
+     */
+    public synchronized void remove(int ipAddress) {
+        Entry entry = entries.remove(ipAddress);
+        if (entry != null) {
+            entry.removed = true;
+        }
+    }
+
+    /**
+     * Сбрасывает интервал адреса до минимального, например после изменения, найденного полным сканированием.
+     *
+     * @param ipAddress IPv4-адрес в виде int.
+     */
+    public synchronized void tighten(int ipAddress) {
+        Entry entry = entries.get(ipAddress);
+        if (entry == null) {
+            return;
+        }
+        entry.intervalMillis = minIntervalMillis;
+        if (entry.inFlight) {
+            entry.tightened = true;
+        } else if (entry.scheduled && entry.deadlineTick > tick + ticks(minIntervalMillis)) {
+            schedule(entry, minIntervalMillis);
+        }
+    }
+
+    private static long ticks(long delayMillis) {
+        return Math.max(1, (delayMillis + TICK_MILLIS - 1) / TICK_MILLIS);
+    }
+
+    /**
+     * Помещает проверку в ячейку колеса. Прежняя копия в другой ячейке отбрасывается при просмотре,
+     * так как её ячейка не совпадает с новым сроком.
+     */
+    private void schedule(Entry entry, long delayMillis) {
+        entry.deadlineTick = tick + ticks(delayMillis);
+        entry.scheduled = true;
+        wheel.get((int) (entry.deadlineTick % WHEEL_SIZE)).add(entry);
+    }
+
+    private void run() {
+        long tickNanos = TimeUnit.MILLISECONDS.toNanos(TICK_MILLIS);
+        List<Entry> due = new ArrayList<>();
+        while (!closed) {
+            try {
+                Thread.sleep(TICK_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            synchronized (this) {
+                long target = (System.nanoTime() - startNanos) / tickNanos;
+                while (tick < target) {
+                    tick++;
+                    tokens = Math.min(budget, tokens + (double) budget * TICK_MILLIS / 1000);
+                    expire((int) (tick % WHEEL_SIZE));
+                }
+                while (tokens >= 1 && !ready.isEmpty()) {
+                    Entry entry = ready.poll();
+                    if (!entry.removed) {
+                        tokens--;
+                        probes++;
+                        due.add(entry);
+                    }
+                }
+            }
+            for (Entry entry : due) {
+                try {
+                    ScanEngine.getInstance().submit(() -> {
+                        probe(entry);
+                        return null;
+                    });
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            due.clear();
+        }
+    }
+
+    private void expire(int slot) {
+        Iterator<Entry> it = wheel.get(slot).iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (!entry.scheduled || entry.removed || entry.deadlineTick % WHEEL_SIZE != slot) {
+                it.remove();
+            } else if (entry.deadlineTick <= tick) {
+                it.remove();
+                entry.scheduled = false;
+                entry.inFlight = true;
+                ready.add(entry);
+            }
+        }
+    }
+
+    /**
+     * Выполняет проверку и планирует следующую. Прерванная проверка результата не даёт:
+     * адрес планируется заново с прежним интервалом, если планировщик не закрыт.
+     */
+    private void probe(Entry entry) {
+        long state = DOWN;
+        boolean completed = false;
+        try {
+            state = task.probe(entry.ip);
+            completed = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            logger.error("Ошибка проверки {}: {}", UtilityNetwork.formatIpv4(entry.ip), e.getMessage(), e);
+            completed = true;
+        } finally {
+            synchronized (this) {
+                entry.inFlight = false;
+                if (!entry.removed && !closed) {
+                    if (completed) {
+                        record(entry, state);
+                    }
+                    schedule(entry, entry.intervalMillis);
+                }
+            }
+        }
+    }
+
+    /**
+     * Учитывает результат проверки: изменение состояния или ужесточение сбрасывает интервал
+     * к минимальному, иначе он удваивается.
+     */
+    private void record(Entry entry, long state) {
+        boolean changed = entry.probed && state != entry.state;
+        if (changed) {
+            changes++;
+        }
+        entry.state = state;
+        entry.probed = true;
+        entry.intervalMillis = changed || entry.tightened
+                ? minIntervalMillis
+                : Math.min(maxIntervalMillis, entry.intervalMillis * 2);
+        entry.tightened = false;
+    }
+
+    /**
+     * Возвращает число отслеживаемых адресов.
+     *
+     * @return Число адресов.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Возвращает число проверок, срок которых наступил, но которые ждут бюджета.
+     *
+     * @return Длина очереди.
+     */
+    public synchronized int getBacklog() {
+        return ready.size();
+    }
+
+    /**
+     * Возвращает число выполненных проверок.
+     *
+     * @return Число проверок.
+     */
+    public synchronized long getProbeCount() {
+        return probes;
+    }
+
+    /**
+     * Возвращает число проверок, обнаруживших изменение.
+     *
+     * @return Число изменений.
+     */
+    public synchronized long getChangeCount() {
+        return changes;
+    }
+
+    /**
+     * Останавливает планировщик. Выполняющиеся проверки завершаются, но больше не планируются.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        timer.interrupt();
+        synchronized (this) {
+            entries.clear();
+            ready.clear();
+            for (ArrayDeque<Entry> slot : wheel) {
+                slot.clear();
+            }
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("ProbeScheduler{hosts=%d, backlog=%d, probes=%d, changes=%d, budget=%d/s}",
+                entries.size(), ready.size(), probes, changes, budget);
+    }
+}
@@ -2,6 +2,7 @@ package lanradar;
 
 import org.snmp4j.*;
 import org.snmp4j.event.ResponseEvent;
+import org.snmp4j.event.ResponseListener;
 import org.snmp4j.mp.SnmpConstants;
 import org.snmp4j.smi.*;
 import org.snmp4j.transport.DefaultUdpTransportMapping;
@@ -11,35 +12,116 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * Предоставляет методы для проверки SNMP-порта и выполнения SNMP Walk.
+ * <p>
+ * Все запросы идут через один общий UDP-транспорт, который создаётся при первом запросе. Асинхронные
+ * запросы не занимают потоков на время ожидания: повторы и тайм-ауты обслуживает единственный таймер
+ * сессии SNMP4J.
  */
 public class SNMP {
 
     private static final Logger logger = LoggerFactory.getLogger(SNMP.class);
-    private static Snmp snmp = null;
-    private static TransportMapping<UdpAddress> transport = null;
+    private static final int SNMP_PORT = 161;
+    private static final int RECEIVE_BUFFER_SIZE = 1 << 20;
+    private static final OID SYS_DESCR = new OID("1.3.6.1.2.1.1.1.0");
+    private static final OID ROOT_OID = new OID("1");
+    private static final int DEFAULT_MAX_REPETITIONS = Integer.getInteger("lanradar.snmp.maxRepetitions", 25);
+    private static final int WALK_CONCURRENCY = Integer.getInteger("lanradar.snmp.walkConcurrency", 4);
+    private static final int WALK_BUFFER = Integer.getInteger("lanradar.snmp.walkBuffer", 4096);
+    private static final VariableBinding END_OF_RANGE = new VariableBinding();
+    private static final Map<String, Semaphore> WALK_PERMITS = new ConcurrentHashMap<>();
+    private static final long V1_TTL_NANOS =
+            TimeUnit.SECONDS.toNanos(Long.getLong("lanradar.snmp.v1TtlSeconds", 600));
+    /** Агенты, ответившие только по SNMPv1, и срок (System.nanoTime), до которого им не шлются GETBULK. */
+    private static final Map<String, Long> V1_AGENTS = new ConcurrentHashMap<>();
 
     /**
-     * Инициализирует общий объект SNMP и запускает транспорт.
+     * Границы независимых поддеревьев для параллельного обхода: interfaces, at, ip, tcp, snmp,
+     * bridge, host, ifMIB, entity, enterprises, snmpV2. Диапазон до первой границы включает system.
+     */
+    private static final OID[] WALK_BOUNDARIES = {
+            new OID("1.3.6.1.2.1.2"),
+            new OID("1.3.6.1.2.1.3"),
+            new OID("1.3.6.1.2.1.4"),
+            new OID("1.3.6.1.2.1.6"),
+            new OID("1.3.6.1.2.1.11"),
+            new OID("1.3.6.1.2.1.17"),
+            new OID("1.3.6.1.2.1.25"),
+            new OID("1.3.6.1.2.1.31"),
+            new OID("1.3.6.1.2.1.47"),
+            new OID("1.3.6.1.4.1"),
+            new OID("1.3.6.1.6")
+    };
+    private static volatile Snmp snmp = null;
+    private static volatile boolean closed;
+    private static DefaultUdpTransportMapping transport = null;
+
+    /**
+     * Ленивая инициализация исполнителя параллельных обходов.
+     */
+    private static final class WalkExecutorHolder {
+        static final ExecutorService EXECUTOR =
+                Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("snmp-walk-", 0).factory());
+    }
+
+    /**
+     * Инициализирует общий объект SNMP и запускает транспорт. Явный вызов не обязателен:
+     * транспорт создаётся при первом запросе.
      *
-     * @throws IOException Если не удалось создать или запустить транспорт.
+     * @throws IOException Если не удалось создать или запустить транспорт либо SNMP уже закрыт
+     *                     ({@link #closeSnmp()}).
      */
     public static synchronized void initSnmp() throws IOException {
+        if (closed) {
+            throw new IOException("SNMP закрыт");
+        }
         if (snmp == null) {
             transport = new DefaultUdpTransportMapping();
+            // Буфер приёма рассчитан на тысячи одновременно ожидающих ответов
+            transport.setReceiveBufferSize(RECEIVE_BUFFER_SIZE);
             snmp = new Snmp(transport);
             transport.listen();
         }
     }
 
     /**
-     * Закрывает объект SNMP и транспорт.
+     * Возвращает общий объект SNMP, при необходимости инициализируя его. После {@link #closeSnmp()}
+     * транспорт заново не создаётся.
+     *
+     * @return Объект SNMP.
+     * @throws IOException Если не удалось создать или запустить транспорт либо SNMP уже закрыт.
+     */
+    private static Snmp session() throws IOException {
+        Snmp session = snmp;
+        if (session == null) {
+            initSnmp();
+            session = snmp;
+        }
+        return session;
+    }
+
+    /**
+     * Закрывает объект SNMP и транспорт. Закрытие окончательное: последующие запросы завершаются
+     * без обращения к сети, а транспорт не создаётся заново.
      *
      * @throws IOException Если произошла ошибка ввода/вывода при закрытии.
      */
     public static synchronized void closeSnmp() throws IOException {
+        closed = true;
         if (snmp != null) {
             snmp.close();
             transport.close();
@@ -56,10 +138,22 @@ public class SNMP {
      * @return Настроенный объект CommunityTarget.
      */
     private static CommunityTarget createCommunityTarget(String ipAddress, String community) {
+        return createCommunityTarget(ipAddress, SNMP_PORT, community);
+    }
+
+    /**
+     * Создаёт объект CommunityTarget для SNMP-связи с агентом на заданном порту.
+     *
+     * @param ipAddress IPv4-адрес.
+     * @param port      UDP-порт агента.
+     * @param community SNMP-сообщество (например, "public").
+     * @return Настроенный объект CommunityTarget.
+     */
+    private static CommunityTarget createCommunityTarget(String ipAddress, int port, String community) {
         CommunityTarget target = new CommunityTarget();
         target.setCommunity(new OctetString(community));
         target.setVersion(SnmpConstants.version2c);
-        target.setAddress(new UdpAddress(ipAddress + "/161"));
+        target.setAddress(new UdpAddress(ipAddress + "/" + port));
         target.setRetries(2);
         target.setTimeout(1500);
         return target;
@@ -72,20 +166,69 @@ public class SNMP {
      * @return true, если SNMP отвечает, иначе false.
      */
     public static boolean isPortSNMPOpen(String ipAddress) {
-        if (snmp == null) {
-            throw new IllegalStateException("SNMP not initialized");
+        return isPortSNMPOpenAsync(ipAddress).join();
+    }
+
+    /**
+     * Асинхронно проверяет, отвечает ли SNMP-агент на заданном IP (порт 161).
+     *
+     * @param ipAddress IPv4-адрес.
+     * @return Future, завершающийся true, если агент ответил, и false по тайм-ауту или при ошибке.
+     */
+    public static CompletableFuture<Boolean> isPortSNMPOpenAsync(String ipAddress) {
+        return isPortSNMPOpenAsync(ipAddress, SNMP_PORT);
+    }
+
+    /**
+     * Асинхронно проверяет, отвечает ли SNMP-агент на заданном IP и порту (например, локальный
+     * агент на loopback). Запрос GET sysDescr.0 отправляется через общий транспорт, поток не блокируется.
+     *
+     * @param ipAddress IPv4-адрес.
+     * @param port      UDP-порт агента.
+     * @return Future, завершающийся true, если агент ответил, и false по тайм-ауту или при ошибке.
+     */
+    public static CompletableFuture<Boolean> isPortSNMPOpenAsync(String ipAddress, int port) {
+        Snmp session;
+        try {
+            session = session();
+        } catch (IOException e) {
+            if (!closed) {
+                logger.error("Ошибка инициализации SNMP: {}", e.getMessage(), e);
+            }
+            return CompletableFuture.completedFuture(false);
         }
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        PDU pdu = new PDU();
+        pdu.setType(PDU.GET);
+        pdu.add(new VariableBinding(SYS_DESCR));
+        ResponseListener listener = new ResponseListener() {
+            @Override
+            public <A extends Address> void onResponse(ResponseEvent<A> event) {
+                // Асинхронный запрос нужно отменить явно, иначе SNMP4J продолжит повторы
+                ((Snmp) event.getSource()).cancel(event.getRequest(), this);
+                if (event.getError() != null) {
+                    logger.info("Ошибка проверки SNMP-порта ({}): {}", ipAddress, event.getError().getMessage());
+                }
+                result.complete(event.getResponse() != null);
+            }
+        };
         try {
-            CommunityTarget target = createCommunityTarget(ipAddress, "public");
-            PDU pdu = new PDU();
-            pdu.setType(PDU.GETNEXT);
-            pdu.add(new VariableBinding(new OID("1.3.6.1.2.1.1.1.0")));
-            ResponseEvent response = snmp.get(pdu, target);
-            return (response.getResponse() != null);
+            session.send(pdu, createCommunityTarget(ipAddress, port, "public"), null, listener);
         } catch (IOException e) {
             logger.error("Ошибка проверки SNMP-порта ({}): {}", ipAddress, e.getMessage(), e);
-            return false;
+            result.complete(false);
         }
+        return result;
+    }
+
+    /**
+     * Возвращает число асинхронных SNMP-запросов, ожидающих ответа.
+     *
+     * @return Число ожидающих запросов или 0, если SNMP не инициализирован.
+     */
+    public static int getPendingRequestCount() {
+        Snmp session = snmp;
+        return session == null ? 0 : session.getPendingAsyncRequestCount();
     }
 
     /**
@@ -97,32 +240,257 @@ public class SNMP {
      */
     public static List<String> snmpWalkEntireMIB(String ipAddress) throws IOException {
         List<String> resultList = new ArrayList<>();
-        if (snmp == null) {
-            initSnmp();
-        }
+        walk(ipAddress, ROOT_OID, DEFAULT_MAX_REPETITIONS, vb -> resultList.add(formatBinding(vb)));
+        return resultList;
+    }
+
+    /**
+     * Обходит поддерево MIB запросами GETBULK и передаёт каждую полученную пару OID/значение
+     * в приёмник сразу по прибытии ответа, ничего не накапливая. Если агент не ответил на первый
+     * GETBULK, этот обход продолжается по SNMPv1 запросами GETNEXT. Только если агент ответил на них,
+     * последующие обходы в течение {@code lanradar.snmp.v1TtlSeconds} секунд (по умолчанию 600) сразу
+     * идут по SNMPv1; простой тайм-аут агента к ним не относит.
+     *
+     * @param ipAddress      IPv4-адрес.
+     * @param root           Корень поддерева (например, "1" для всей MIB).
+     * @param maxRepetitions Число значений, запрашиваемых одним GETBULK.
+     * @param sink           Приёмник пар OID/значение в порядке возрастания OID.
+     * @return Число переданных пар.
+     * @throws IOException Если произошла ошибка при обмене SNMP.
+     */
+    public static long walk(String ipAddress, OID root, int maxRepetitions, Consumer<VariableBinding> sink)
+            throws IOException {
+        return walkRange(ipAddress, root, root.size() == 0 ? null : root.nextPeer(), maxRepetitions, null, sink);
+    }
+
+    /**
+     * Обходит MIB от OID start (не включая его) до OID end (не включая его). Ответы ожидаются
+     * без блокировки монитора, поэтому обход можно выполнять на виртуальном потоке; при прерывании
+     * потока обход завершается с уже полученным результатом.
+     *
+     * @param ipAddress      IPv4-адрес.
+     * @param start          Начало диапазона.
+     * @param end            Конец диапазона или null, чтобы идти до конца MIB.
+     * @param maxRepetitions Число значений, запрашиваемых одним GETBULK.
+     * @param permits        Разрешения на запросы к агенту (удерживаются только на время запроса) или null.
+     * @param sink           Приёмник пар OID/значение в порядке возрастания OID.
+     * @return Число переданных пар.
+     * @throws IOException Если произошла ошибка при обмене SNMP.
+     */
+    static long walkRange(String ipAddress, OID start, OID end, int maxRepetitions, Semaphore permits,
+                          Consumer<VariableBinding> sink) throws IOException {
+        Snmp session = session();
         CommunityTarget target = createCommunityTarget(ipAddress, "public");
-        OID currentOid = new OID("1");
-        while (true) {
+        boolean bulk = !isV1Agent(ipAddress);
+        boolean fallback = false;
+        if (!bulk) {
+            target.setVersion(SnmpConstants.version1);
+        }
+        long count = 0;
+        OID current = start;
+        while (!Thread.currentThread().isInterrupted()) {
             PDU pdu = new PDU();
-            pdu.setType(PDU.GETNEXT);
-            pdu.add(new VariableBinding(currentOid));
-            ResponseEvent event = snmp.send(pdu, target);
-            if (event == null || event.getResponse() == null) {
+            if (bulk) {
+                pdu.setType(PDU.GETBULK);
+                pdu.setNonRepeaters(0);
+                pdu.setMaxRepetitions(maxRepetitions);
+            } else {
+                pdu.setType(PDU.GETNEXT);
+            }
+            pdu.add(new VariableBinding(current));
+            PDU responsePdu;
+            try {
+                if (permits != null) {
+                    permits.acquire();
+                }
+                try {
+                    responsePdu = request(session, pdu, target);
+                } finally {
+                    if (permits != null) {
+                        permits.release();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
                 break;
             }
-            PDU responsePdu = event.getResponse();
-            VariableBinding vb = responsePdu.get(0);
-            if (vb == null) {
+            if (responsePdu == null) {
+                if (bulk && count == 0) {
+                    logger.info("Агент {} не ответил на GETBULK, обход по SNMPv1 GETNEXT", ipAddress);
+                    target.setVersion(SnmpConstants.version1);
+                    bulk = false;
+                    fallback = true;
+                    continue;
+                }
+                if (!fallback && count == 0) {
+                    // Агент, ранее отвечавший только по SNMPv1, молчит: при следующем обходе снова пробуем GETBULK
+                    V1_AGENTS.remove(ipAddress);
+                }
                 break;
             }
-            OID nextOid = vb.getOid();
-            if (nextOid == null || nextOid.compareTo(currentOid) <= 0 || vb.getVariable() instanceof Null) {
+            if (fallback) {
+                V1_AGENTS.put(ipAddress, System.nanoTime() + V1_TTL_NANOS);
+                fallback = false;
+            }
+            if (responsePdu.getErrorStatus() != PDU.noError || responsePdu.size() == 0) {
+                break;
+            }
+            boolean finished = false;
+            for (VariableBinding vb : responsePdu.getVariableBindings()) {
+                OID nextOid = vb.getOid();
+                if (nextOid == null || vb.isException() || vb.getVariable() instanceof Null
+                        || nextOid.compareTo(current) <= 0 || (end != null && nextOid.compareTo(end) >= 0)) {
+                    finished = true;
+                    break;
+                }
+                sink.accept(vb);
+                count++;
+                current = nextOid;
+            }
+            if (finished) {
                 break;
             }
-            String line = "OID: " + nextOid + ", Value: " + vb.getVariable();
-            resultList.add(line);
-            currentOid = nextOid;
         }
-        return resultList;
+        return count;
+    }
+
+    /**
+     * Проверяет, ответил ли агент недавно только по SNMPv1. Просроченная отметка удаляется.
+     *
+     * @param ipAddress IPv4-адрес агента.
+     * @return true, если обход следует сразу вести запросами GETNEXT SNMPv1.
+     */
+    private static boolean isV1Agent(String ipAddress) {
+        Long until = V1_AGENTS.get(ipAddress);
+        if (until == null) {
+            return false;
+        }
+        if (System.nanoTime() - until < 0) {
+            return true;
+        }
+        V1_AGENTS.remove(ipAddress, until);
+        return false;
+    }
+
+    /**
+     * Обходит всю MIB параллельно: дерево делится на непересекающиеся диапазоны по границам
+     * {@link #WALK_BOUNDARIES}, диапазоны обходятся одновременно (не более {@code lanradar.snmp.walkConcurrency}
+     * запросов к одному агенту), а результаты передаются в приёмник в порядке возрастания OID.
+     * Первый незавершённый диапазон выводится по мере поступления ответов, последующие накапливаются до своей
+     * очереди в буфере на {@code lanradar.snmp.walkBuffer} пар (по умолчанию 4096); обход диапазона
+     * с заполненным буфером приостанавливается, не занимая разрешения агента.
+     *
+     * @param ipAddress      IPv4-адрес.
+     * @param maxRepetitions Число значений, запрашиваемых одним GETBULK.
+     * @param sink           Приёмник пар OID/значение в порядке возрастания OID.
+     * @return Число переданных пар.
+     * @throws IOException          Если обход одного из диапазонов завершился ошибкой SNMP.
+     * @throws InterruptedException Если поток прерван; обход диапазонов при этом прекращается.
+     */
+    public static long walkParallel(String ipAddress, int maxRepetitions, Consumer<VariableBinding> sink)
+            throws IOException, InterruptedException {
+        session();
+        Semaphore agentPermits = WALK_PERMITS.computeIfAbsent(ipAddress, k -> new Semaphore(WALK_CONCURRENCY));
+        int ranges = WALK_BOUNDARIES.length + 1;
+        List<BlockingQueue<VariableBinding>> queues = new ArrayList<>(ranges);
+        List<Future<Long>> walks = new ArrayList<>(ranges);
+        try {
+            for (int i = 0; i < ranges; i++) {
+                OID start = i == 0 ? ROOT_OID : WALK_BOUNDARIES[i - 1];
+                OID end = i < WALK_BOUNDARIES.length ? WALK_BOUNDARIES[i] : ROOT_OID.nextPeer();
+                BlockingQueue<VariableBinding> queue = new ArrayBlockingQueue<>(WALK_BUFFER);
+                queues.add(queue);
+                walks.add(WalkExecutorHolder.EXECUTOR.submit(() -> {
+                    try {
+                        return walkRange(ipAddress, start, end, maxRepetitions, agentPermits, vb -> put(queue, vb));
+                    } finally {
+                        put(queue, END_OF_RANGE);
+                    }
+                }));
+            }
+            long count = 0;
+            for (int i = 0; i < ranges; i++) {
+                BlockingQueue<VariableBinding> queue = queues.get(i);
+                VariableBinding vb;
+                while ((vb = queue.take()) != END_OF_RANGE) {
+                    sink.accept(vb);
+                    count++;
+                }
+                try {
+                    walks.get(i).get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException cause) {
+                        throw cause;
+                    }
+                    throw new IOException(e.getCause());
+                }
+            }
+            return count;
+        } finally {
+            for (Future<Long> walk : walks) {
+                walk.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Помещает пару в буфер диапазона, ожидая места. При прерывании (обход отменён) пара отбрасывается,
+     * а флаг прерывания сохраняется, чтобы обход диапазона завершился.
+     */
+    private static void put(BlockingQueue<VariableBinding> queue, VariableBinding vb) {
+        try {
+            queue.put(vb);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Отправляет запрос асинхронно и ждёт ответа, не удерживая монитор.
+     *
+     * @param session Сессия SNMP.
+     * @param pdu     Запрос.
+     * @param target  Агент.
+     * @return Ответ или null по тайм-ауту.
+     * @throws IOException          Если запрос не удалось отправить.
+     * @throws InterruptedException Если поток прерван во время ожидания; запрос при этом отменяется.
+     */
+    private static PDU request(Snmp session, PDU pdu, Target<?> target) throws IOException, InterruptedException {
+        CompletableFuture<PDU> response = new CompletableFuture<>();
+        ResponseListener listener = new ResponseListener() {
+            @Override
+            public <A extends Address> void onResponse(ResponseEvent<A> event) {
+                ((Snmp) event.getSource()).cancel(event.getRequest(), this);
+                response.complete(event.getResponse());
+            }
+        };
+        session.send(pdu, target, null, listener);
+        try {
+            return response.get();
+        } catch (InterruptedException e) {
+            session.cancel(pdu, listener);
+            throw e;
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Возвращает число значений в одном GETBULK по умолчанию (свойство {@code lanradar.snmp.maxRepetitions}).
+     *
+     * @return Значение max-repetitions.
+     */
+    public static int getDefaultMaxRepetitions() {
+        return DEFAULT_MAX_REPETITIONS;
+    }
+
+    /**
+     * Форматирует пару OID/значение для вывода.
+     *
+     * @param vb Пара OID/значение.
+     * @return Строка вида "OID: <oid>, Value: <value>".
+     */
+    public static String formatBinding(VariableBinding vb) {
+        return "OID: " + vb.getOid() + ", Value: " + vb.getVariable();
     }
 }
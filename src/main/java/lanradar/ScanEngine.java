@@ -0,0 +1,198 @@
+package lanradar;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.PrimitiveIterator;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+
+/**
+ * Общий для приложения исполнитель задач сканирования на виртуальных потоках.
+ * <p>
+ * Число одновременно выполняемых задач ограничено (свойство {@code lanradar.scan.concurrency}). Вызовы, которые
+ * в Java 21 блокируют поток-носитель виртуального потока (нативный {@code InetAddress.isReachable}),
+ * выполняются через {@link #callPinned(Callable)} на небольшом постоянном пуле платформенных потоков
+ * (свойство {@code lanradar.scan.pinnedThreads}).
+ */
+public final class ScanEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(ScanEngine.class);
+    private static final int DEFAULT_CONCURRENCY = 1024;
+    private static final int DEFAULT_PINNED_THREADS = 128;
+
+    private final ExecutorService executor;
+    private final ExecutorService pinnedExecutor;
+    private final Semaphore permits;
+    private final int concurrency;
+
+    /**
+     * Создаёт исполнитель с заданными ограничениями.
+     *
+     * @param concurrency   Максимальное число одновременно выполняемых задач.
+     * @param pinnedThreads Число платформенных потоков для блокирующих нативных вызовов.
+     */
+    public ScanEngine(int concurrency, int pinnedThreads) {
+        if (concurrency < 1 || pinnedThreads < 1) {
+            throw new IllegalArgumentException("Ограничения должны быть положительными");
+        }
+        this.concurrency = concurrency;
+        this.permits = new Semaphore(concurrency);
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("scan-", 0).factory());
+        ThreadFactory pinnedFactory = Thread.ofPlatform().name("scan-pinned-", 0).daemon(true).factory();
+        this.pinnedExecutor = Executors.newFixedThreadPool(pinnedThreads, pinnedFactory);
+    }
+
+    /**
+     * Ленивая инициализация общего исполнителя.
+     */
+    private static final class Holder {
+        static final ScanEngine INSTANCE = new ScanEngine(
+                Integer.getInteger("lanradar.scan.concurrency", DEFAULT_CONCURRENCY),
+                Integer.getInteger("lanradar.scan.pinnedThreads", DEFAULT_PINNED_THREADS));
+    }
+
+    /**
+     * Возвращает общий для приложения исполнитель.
+     *
+     * @return Исполнитель задач сканирования.
+     */
+    public static ScanEngine getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Запускает задачу на виртуальном потоке. Если достигнут предел одновременных задач,
+     * вызывающий поток ждёт освобождения места.
+     *
+     * @param task Задача.
+     * @param <T>  Тип результата.
+     * @return Future результата задачи.
+     * @throws InterruptedException Если вызывающий поток прерван во время ожидания.
+     */
+    public <T> Future<T> submit(Callable<T> task) throws InterruptedException {
+        permits.acquire();
+        try {
+            return executor.submit(() -> {
+                try {
+                    return task.call();
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Выполняет задачу для каждого элемента итератора и дожидается завершения всех задач.
+     * Элементы извлекаются лениво по мере освобождения мест, а хранятся только выполняющиеся задачи,
+     * поэтому расход памяти не зависит от числа элементов. Исключения задач записываются в журнал.
+     *
+     * @param items Источник элементов (например, {@link Ipv4Range#iterator()}).
+     * @param task  Задача для одного элемента.
+     * @throws InterruptedException Если вызывающий поток прерван; выполняющиеся задачи при этом прерываются.
+     */
+    public void forEach(PrimitiveIterator.OfInt items, IntConsumer task) throws InterruptedException {
+        Set<Thread> running = ConcurrentHashMap.newKeySet();
+        AtomicLong pending = new AtomicLong(1);
+        CountDownLatch done = new CountDownLatch(1);
+        try {
+            while (items.hasNext()) {
+                int item = items.nextInt();
+                permits.acquire();
+                pending.incrementAndGet();
+                try {
+                    executor.execute(() -> {
+                        running.add(Thread.currentThread());
+                        try {
+                            task.accept(item);
+                        } catch (RuntimeException e) {
+                            logger.error("Ошибка в задаче сканирования: {}", e.getMessage(), e);
+                        } finally {
+                            running.remove(Thread.currentThread());
+                            permits.release();
+                            if (pending.decrementAndGet() == 0) {
+                                done.countDown();
+                            }
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    permits.release();
+                    pending.decrementAndGet();
+                    throw e;
+                }
+            }
+            if (pending.decrementAndGet() == 0) {
+                done.countDown();
+            }
+            done.await();
+        } catch (InterruptedException e) {
+            running.forEach(Thread::interrupt);
+            throw e;
+        }
+    }
+
+    /**
+     * Выполняет блокирующий нативный вызов на пуле платформенных потоков и ждёт результата.
+     * Виртуальный поток при этом освобождает свой поток-носитель.
+     *
+     * @param call Блокирующий вызов.
+     * @param <T>  Тип результата.
+     * @return Результат вызова.
+     * @throws Exception Исключение, выброшенное вызовом, или InterruptedException при прерывании.
+     */
+    public <T> T callPinned(Callable<T> call) throws Exception {
+        Future<T> future = pinnedExecutor.submit(call);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Возвращает предел одновременно выполняемых задач.
+     *
+     * @return Предел параллелизма.
+     */
+    public int getConcurrencyLimit() {
+        return concurrency;
+    }
+
+    /**
+     * Возвращает число задач, выполняющихся в данный момент.
+     *
+     * @return Число активных задач.
+     */
+    public int getActiveCount() {
+        return concurrency - permits.availablePermits();
+    }
+
+    /**
+     * Прерывает выполняющиеся задачи и завершает исполнитель.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+        pinnedExecutor.shutdownNow();
+    }
+}
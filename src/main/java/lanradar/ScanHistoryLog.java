@@ -0,0 +1,855 @@
+package lanradar;
+
+import lanradar.DeviceDiffEngine.EventType;
+import lanradar.NetworkDevice.DeviceStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Журнал изменений устройств, дописываемый в конец и хранимый между запусками.
+ * <p>
+ * Записи (событие {@link DeviceDiffEngine} вместе с состоянием устройства после него) пишутся в сегменты
+ * фиксированного размера, отображённые в память; заполненный сегмент закрывается и начинается следующий.
+ * Каждые {@code lanradar.history.checkpointInterval} записей сохраняется контрольная точка: состояние
+ * всех устройств и время первого появления каждого MAC-адреса. Запрос состояния на момент времени читает
+ * ближайшую предыдущую контрольную точку и просматривает только записи после неё.
+ * <p>
+ * {@link #append(DeviceDiffEngine.Event)} только ставит запись в ограниченную очередь
+ * ({@code lanradar.history.queueCapacity}); в файлы её пишет отдельный поток, поэтому обработчик событий
+ * движка не ждёт диска. При заполнении очереди записи отбрасываются. Хранятся не более
+ * {@code lanradar.history.maxSegments} последних сегментов; более старые удаляются вместе с их
+ * контрольными точками. Контрольных точек хранится не более {@code lanradar.history.maxCheckpoints},
+ * но не меньше одной на сегмент (первой в нём), поэтому запрос к любому моменту хранимой истории
+ * просматривает не больше одного сегмента записей. Каталог журнала блокируется ({@link FileLock}),
+ * поэтому второй процесс с тем же каталогом получит ошибку открытия, а не испорченные сегменты.
+ * Для запросов к журналу, который пишет другой процесс, служит {@link #openReadOnly(Path)}: такой журнал
+ * не блокирует каталог и видит записи, сделанные до его открытия.
+ * <p>
+ * Формат записи: время (long), IP (int), MAC (long), тип события, статус, флаги, длина DNS-имени
+ * (по байту) и само имя в UTF-8 — 24 байта плюс имя.
+ */
+public final class ScanHistoryLog implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ScanHistoryLog.class);
+
+    static final int SEGMENT_MAGIC = 0x4C524853;
+    static final int CHECKPOINT_MAGIC = 0x4C524843;
+    static final int VERSION = 1;
+
+    /** Размер сегмента по умолчанию. */
+    public static final long DEFAULT_SEGMENT_BYTES = 8L << 20;
+    /** Число записей между контрольными точками по умолчанию. */
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 4096;
+    /** Число хранимых сегментов по умолчанию. */
+    public static final int DEFAULT_MAX_SEGMENTS = 64;
+    /** Число хранимых контрольных точек по умолчанию (при необходимости их хранится по одной на сегмент). */
+    public static final int DEFAULT_MAX_CHECKPOINTS = 128;
+    /** Ёмкость очереди записи по умолчанию. */
+    public static final int DEFAULT_QUEUE_CAPACITY = 8192;
+
+    private static final int SEGMENT_HEADER = 16;
+    private static final int RECORD_HEADER = 24;
+    private static final int MAX_DNS_BYTES = 255;
+    private static final byte FLAG_SNMP = 1;
+    private static final EventType[] TYPES = EventType.values();
+    private static final DeviceStatus[] STATUSES = DeviceStatus.values();
+
+    /**
+     * Запись журнала: событие и состояние устройства после него.
+     */
+    public static final class Record {
+        private final long timestamp;
+        private final int ip;
+        private final long mac;
+        private final EventType type;
+        private final DeviceStatus status;
+        private final boolean snmpAvailable;
+        private final String dnsName;
+
+        Record(long timestamp, int ip, long mac, EventType type, DeviceStatus status,
+               boolean snmpAvailable, String dnsName) {
+            this.timestamp = timestamp;
+            this.ip = ip;
+            this.mac = mac;
+            this.type = type;
+            this.status = status;
+            this.snmpAvailable = snmpAvailable;
+            this.dnsName = dnsName;
+        }
+
+        /**
+         * Возвращает время записи.
+         *
+         * @return Время в миллисекундах (System.currentTimeMillis).
+         */
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        /**
+         * Возвращает IPv4-адрес устройства.
+         *
+         * @return Адрес в виде int.
+         */
+        public int getIp() {
+            return ip;
+        }
+
+        /**
+         * Возвращает MAC-адрес устройства.
+         *
+         * @return MAC-адрес или {@link NetworkDevice#NO_MAC}.
+         */
+        public long getMac() {
+            return mac;
+        }
+
+        /**
+         * Возвращает тип события.
+         *
+         * @return Тип.
+         */
+        public EventType getType() {
+            return type;
+        }
+
+        /**
+         * Возвращает статус устройства после события.
+         *
+         * @return Статус.
+         */
+        public DeviceStatus getStatus() {
+            return status;
+        }
+
+        /**
+         * Возвращает флаг доступности SNMP после события.
+         *
+         * @return true, если SNMP доступен.
+         */
+        public boolean getSNMPAvailable() {
+            return snmpAvailable;
+        }
+
+        /**
+         * Возвращает DNS-имя после события.
+         *
+         * @return Имя или null.
+         */
+        public String getDNSname() {
+            return dnsName;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%tF %<tT %s %s mac=%s dns=%s snmp=%s status=%s", timestamp, type,
+                    UtilityNetwork.formatIpv4(ip), mac == NetworkDevice.NO_MAC ? null : UtilityNetwork.formatMac(mac),
+                    dnsName, snmpAvailable, status);
+        }
+    }
+
+    /**
+     * Контрольная точка: файл и сегмент, с которого начинаются записи после неё.
+     */
+    private static final class Checkpoint {
+        final Path file;
+        final int segment;
+
+        Checkpoint(Path file, int segment) {
+            this.file = file;
+            this.segment = segment;
+        }
+    }
+
+    /** Признак конца очереди записи. */
+    private static final Record END = new Record(0, 0, NetworkDevice.NO_MAC, null, null, false, null);
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final int checkpointInterval;
+    private final int maxSegments;
+    private final int maxCheckpoints;
+    private final boolean readOnly;
+    private final BlockingQueue<Record> pending;
+    private final AtomicLong dropped = new AtomicLong();
+    private final List<Integer> segments = new ArrayList<>();
+    private final TreeMap<Long, Checkpoint> checkpoints = new TreeMap<>();
+    private final Map<Integer, Record> current = new HashMap<>();
+    private final Map<Long, Long> firstSeen = new HashMap<>();
+    private FileChannel lockChannel;
+    private FileLock lock;
+    private Thread writer;
+    private volatile boolean closed;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int segment;
+    private int position;
+    private long lastTimestamp;
+    private int sinceCheckpoint;
+
+    private ScanHistoryLog(Path directory, int segmentBytes, int checkpointInterval, int maxSegments,
+                           int maxCheckpoints, int queueCapacity, boolean readOnly) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.checkpointInterval = checkpointInterval;
+        this.maxSegments = maxSegments;
+        this.maxCheckpoints = maxCheckpoints;
+        this.readOnly = readOnly;
+        this.pending = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    /**
+     * Открывает журнал в каталоге с ограничениями хранения и очереди по умолчанию.
+     *
+     * @param directory          Каталог журнала (создаётся при отсутствии).
+     * @param segmentBytes       Размер сегмента в байтах.
+     * @param checkpointInterval Число записей между контрольными точками.
+     * @return Открытый журнал.
+     * @throws IOException Если каталог или сегменты недоступны либо журнал открыт другим процессом.
+     */
+    public static ScanHistoryLog open(Path directory, long segmentBytes, int checkpointInterval) throws IOException {
+        return open(directory, segmentBytes, checkpointInterval, DEFAULT_MAX_SEGMENTS, DEFAULT_MAX_CHECKPOINTS,
+                DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Открывает журнал в каталоге, восстанавливая состояние по последней контрольной точке и записям после неё.
+     *
+     * @param directory          Каталог журнала (создаётся при отсутствии).
+     * @param segmentBytes       Размер сегмента в байтах.
+     * @param checkpointInterval Число записей между контрольными точками.
+     * @param maxSegments        Число хранимых сегментов.
+     * @param maxCheckpoints     Число хранимых контрольных точек (не меньше одной на сегмент).
+     * @param queueCapacity      Ёмкость очереди записи.
+     * @return Открытый журнал.
+     * @throws IOException Если каталог или сегменты недоступны либо журнал открыт другим процессом.
+     */
+    public static ScanHistoryLog open(Path directory, long segmentBytes, int checkpointInterval, int maxSegments,
+                                      int maxCheckpoints, int queueCapacity) throws IOException {
+        if (segmentBytes < 4096 || segmentBytes > Integer.MAX_VALUE || checkpointInterval < 1
+                || maxSegments < 1 || maxCheckpoints < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("Некорректные параметры журнала");
+        }
+        ScanHistoryLog log = new ScanHistoryLog(directory, (int) segmentBytes, checkpointInterval, maxSegments,
+                maxCheckpoints, queueCapacity, false);
+        try {
+            log.recover();
+        } catch (IOException | RuntimeException e) {
+            log.unlock();
+            throw e;
+        }
+        log.writer = new Thread(log::drain, "history-writer");
+        log.writer.setDaemon(true);
+        log.writer.start();
+        return log;
+    }
+
+    /**
+     * Открывает журнал с параметрами из свойств {@code lanradar.history.dir} (по умолчанию app/history),
+     * {@code lanradar.history.segmentBytes}, {@code lanradar.history.checkpointInterval},
+     * {@code lanradar.history.maxSegments}, {@code lanradar.history.maxCheckpoints} и
+     * {@code lanradar.history.queueCapacity}.
+     *
+     * @return Открытый журнал.
+     * @throws IOException Если каталог или сегменты недоступны либо журнал открыт другим процессом.
+     */
+    public static ScanHistoryLog openDefault() throws IOException {
+        return open(Path.of(System.getProperty("lanradar.history.dir", "app/history")),
+                Long.getLong("lanradar.history.segmentBytes", DEFAULT_SEGMENT_BYTES),
+                Integer.getInteger("lanradar.history.checkpointInterval", DEFAULT_CHECKPOINT_INTERVAL),
+                Integer.getInteger("lanradar.history.maxSegments", DEFAULT_MAX_SEGMENTS),
+                Integer.getInteger("lanradar.history.maxCheckpoints", DEFAULT_MAX_CHECKPOINTS),
+                Integer.getInteger("lanradar.history.queueCapacity", DEFAULT_QUEUE_CAPACITY));
+    }
+
+    /**
+     * Открывает журнал только для чтения, не блокируя каталог, поэтому запросы возможны, пока журнал пишет
+     * другой процесс (окно или консольный режим). Читаются сегменты и контрольные точки, существовавшие
+     * при открытии, до последней полностью записанной записи. {@link #append(DeviceDiffEngine.Event)}
+     * такого журнала ничего не записывает.
+     *
+     * @param directory Каталог журнала; если его нет, журнал пуст.
+     * @return Журнал только для чтения.
+     * @throws IOException Если сегменты недоступны.
+     */
+    public static ScanHistoryLog openReadOnly(Path directory) throws IOException {
+        ScanHistoryLog log = new ScanHistoryLog(directory, 0, 1, 1, 1, 1, true);
+        if (Files.isDirectory(directory)) {
+            log.recover();
+        }
+        return log;
+    }
+
+    /**
+     * Открывает только для чтения журнал из каталога свойства {@code lanradar.history.dir} (по умолчанию app/history).
+     *
+     * @return Журнал только для чтения.
+     * @throws IOException Если сегменты недоступны.
+     */
+    public static ScanHistoryLog openDefaultReadOnly() throws IOException {
+        return openReadOnly(Path.of(System.getProperty("lanradar.history.dir", "app/history")));
+    }
+
+    private void lock() throws IOException {
+        lockChannel = FileChannel.open(directory.resolve("history.lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            lock = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null;
+        }
+        if (lock == null) {
+            lockChannel.close();
+            lockChannel = null;
+            throw new IOException("Журнал истории уже открыт другим процессом: " + directory);
+        }
+    }
+
+    private void unlock() {
+        if (lockChannel == null) {
+            return;
+        }
+        try {
+            // Закрытие канала снимает блокировку
+            lockChannel.close();
+        } catch (IOException e) {
+            logger.error("Ошибка снятия блокировки журнала истории: {}", e.getMessage(), e);
+        }
+        lockChannel = null;
+        lock = null;
+    }
+
+    private void recover() throws IOException {
+        if (!readOnly) {
+            Files.createDirectories(directory);
+            lock();
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.startsWith("segment-") && name.endsWith(".log")) {
+                    segments.add(Integer.parseInt(name.substring(8, name.length() - 4)));
+                } else if (name.startsWith("checkpoint-") && name.endsWith(".bin")) {
+                    try {
+                        int start = (int) readCheckpoint(file, null, null)[0];
+                        checkpoints.put(Long.parseLong(name.substring(11, name.length() - 4)), new Checkpoint(file, start));
+                    } catch (IOException e) {
+                        logger.error("Контрольная точка журнала повреждена ({}): {}", file, e.getMessage(), e);
+                    }
+                }
+            }
+        }
+        segments.sort(null);
+        int fromSegment = segments.isEmpty() ? 1 : segments.get(0);
+        int fromOffset = SEGMENT_HEADER;
+        for (Long time : checkpoints.descendingKeySet()) {
+            try {
+                long[] start = readCheckpoint(checkpoints.get(time).file, current, firstSeen);
+                fromSegment = (int) start[0];
+                fromOffset = (int) start[1];
+                lastTimestamp = time;
+                break;
+            } catch (IOException e) {
+                logger.error("Контрольная точка журнала повреждена ({}): {}", checkpoints.get(time).file, e.getMessage(), e);
+                current.clear();
+                firstSeen.clear();
+            }
+        }
+        if (segments.isEmpty()) {
+            if (!readOnly) {
+                openSegment(1);
+            }
+            return;
+        }
+        scan(fromSegment, fromOffset, record -> {
+            apply(record);
+            return true;
+        });
+        if (readOnly) {
+            return;
+        }
+        openSegment(segments.get(segments.size() - 1));
+        position = endOf(buffer);
+        prune();
+    }
+
+    private void openSegment(int id) throws IOException {
+        Path file = segmentPath(id);
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        if (buffer.getInt(0) != SEGMENT_MAGIC) {
+            buffer.putInt(0, SEGMENT_MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putLong(8, 0);
+        }
+        if (!segments.contains(id)) {
+            segments.add(id);
+        }
+        segment = id;
+        position = SEGMENT_HEADER;
+    }
+
+    private Path segmentPath(int id) {
+        return directory.resolve(String.format("segment-%08d.log", id));
+    }
+
+    /**
+     * Ставит событие движка изменений в очередь записи, не ожидая диска. Состояние устройства
+     * фиксируется в момент вызова.
+     *
+     * @param event Событие; состояние берётся из устройства события.
+     * @return false, если журнал закрыт, открыт только для чтения или очередь заполнена и запись отброшена.
+     */
+    public boolean append(DeviceDiffEngine.Event event) {
+        if (closed || readOnly) {
+            return false;
+        }
+        NetworkDevice device = event.getDevice();
+        Record record = new Record(System.currentTimeMillis(), device.getIp(), device.getMac(), event.getType(),
+                device.getStatus(), device.getSNMPAvailable(), device.getDNSname());
+        if (pending.offer(record)) {
+            return true;
+        }
+        if (dropped.getAndIncrement() == 0) {
+            logger.warn("Очередь журнала истории заполнена, записи отбрасываются");
+        }
+        return false;
+    }
+
+    /**
+     * Возвращает число записей, отброшенных из-за заполненной очереди.
+     *
+     * @return Число записей.
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Цикл потока записи: забирает записи пачками и пишет их под монитором журнала.
+     */
+    private void drain() {
+        List<Record> batch = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(pending.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            pending.drainTo(batch, 1023);
+            synchronized (this) {
+                for (Record record : batch) {
+                    if (record == END) {
+                        return;
+                    }
+                    try {
+                        write(record);
+                    } catch (IOException e) {
+                        logger.error("Ошибка записи журнала истории: {}", e.getMessage(), e);
+                    }
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    private void write(Record record) throws IOException {
+        byte[] dns = record.dnsName == null ? new byte[0] : record.dnsName.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(dns.length, MAX_DNS_BYTES);
+        if (position + RECORD_HEADER + length > segmentBytes) {
+            rollover();
+        }
+        long timestamp = Math.max(record.timestamp, lastTimestamp);
+        buffer.putInt(position + 8, record.ip);
+        buffer.putLong(position + 12, record.mac);
+        buffer.put(position + 20, (byte) record.type.ordinal());
+        buffer.put(position + 21, (byte) record.status.ordinal());
+        buffer.put(position + 22, record.snmpAvailable ? FLAG_SNMP : 0);
+        buffer.put(position + 23, (byte) length);
+        buffer.put(position + RECORD_HEADER, dns, 0, length);
+        // Время пишется последним: ненулевое время означает, что запись целиком в сегменте
+        buffer.putLong(position, timestamp);
+        if (buffer.getLong(8) == 0) {
+            buffer.putLong(8, timestamp);
+        }
+        position += RECORD_HEADER + length;
+        apply(new Record(timestamp, record.ip, record.mac, record.type, record.status, record.snmpAvailable,
+                length == 0 ? null : new String(dns, 0, length, StandardCharsets.UTF_8)));
+        if (++sinceCheckpoint >= checkpointInterval) {
+            checkpoint();
+        }
+    }
+
+    private void apply(Record record) {
+        current.put(record.ip, record);
+        if (record.mac != NetworkDevice.NO_MAC) {
+            firstSeen.putIfAbsent(record.mac, record.timestamp);
+        }
+        lastTimestamp = Math.max(lastTimestamp, record.timestamp);
+    }
+
+    private void rollover() throws IOException {
+        buffer.force();
+        channel.close();
+        openSegment(segment + 1);
+        checkpoint();
+    }
+
+    /**
+     * Сохраняет контрольную точку: состояние всех устройств и время первого появления MAC-адресов.
+     *
+     * @throws IOException           Если файл не удалось записать.
+     * @throws IllegalStateException Если журнал открыт только для чтения.
+     */
+    public synchronized void checkpoint() throws IOException {
+        if (readOnly) {
+            throw new IllegalStateException("Журнал истории открыт только для чтения");
+        }
+        if (current.isEmpty()) {
+            return;
+        }
+        buffer.force();
+        Path target = directory.resolve("checkpoint-" + lastTimestamp + ".bin");
+        Path temp = directory.resolve("checkpoint.tmp");
+        List<Record> states = new ArrayList<>(current.values());
+        states.sort((a, b) -> Integer.compareUnsigned(a.ip, b.ip));
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(CHECKPOINT_MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(segment);
+            out.writeInt(position);
+            out.writeInt(states.size());
+            for (Record r : states) {
+                writeRecord(out, r);
+            }
+            out.writeInt(firstSeen.size());
+            for (Map.Entry<Long, Long> e : firstSeen.entrySet()) {
+                out.writeLong(e.getKey());
+                out.writeLong(e.getValue());
+            }
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        checkpoints.put(lastTimestamp, new Checkpoint(target, segment));
+        sinceCheckpoint = 0;
+        prune();
+    }
+
+    /**
+     * Удаляет старейшие сегменты сверх предела хранения и контрольные точки, записи после которых
+     * начинаются в уже удалённом сегменте. Затем, пока точек больше предела, удаляются старейшие из точек,
+     * у сегмента которых есть более ранняя точка: первая точка каждого сегмента сохраняется всегда.
+     */
+    private void prune() {
+        while (segments.size() > maxSegments) {
+            delete(segmentPath(segments.remove(0)));
+        }
+        int oldest = segments.get(0);
+        int previous = -1;
+        Iterator<Checkpoint> it = checkpoints.values().iterator();
+        while (it.hasNext()) {
+            Checkpoint checkpoint = it.next();
+            if (checkpoint.segment < oldest || (checkpoint.segment == previous && checkpoints.size() > maxCheckpoints)) {
+                it.remove();
+                delete(checkpoint.file);
+            } else {
+                previous = checkpoint.segment;
+            }
+        }
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.error("Ошибка удаления файла журнала ({}): {}", file, e.getMessage(), e);
+        }
+    }
+
+    private static void writeRecord(DataOutputStream out, Record r) throws IOException {
+        out.writeLong(r.timestamp);
+        out.writeInt(r.ip);
+        out.writeLong(r.mac);
+        out.writeByte(r.type.ordinal());
+        out.writeByte(r.status.ordinal());
+        out.writeBoolean(r.snmpAvailable);
+        out.writeUTF(r.dnsName == null ? "" : r.dnsName);
+    }
+
+    private static Record readRecord(DataInputStream in) throws IOException {
+        long timestamp = in.readLong();
+        int ip = in.readInt();
+        long mac = in.readLong();
+        int type = in.readUnsignedByte();
+        int status = in.readUnsignedByte();
+        boolean snmp = in.readBoolean();
+        String dns = in.readUTF();
+        if (type >= TYPES.length || status >= STATUSES.length) {
+            throw new IOException("Неизвестный тип или статус записи");
+        }
+        return new Record(timestamp, ip, mac, TYPES[type], STATUSES[status], snmp, dns.isEmpty() ? null : dns);
+    }
+
+    /**
+     * Читает контрольную точку.
+     *
+     * @param file   Файл контрольной точки.
+     * @param states Получатель состояний устройств или null.
+     * @param macs   Получатель времён первого появления MAC-адресов или null.
+     * @return Номер сегмента и смещение первой записи после контрольной точки.
+     */
+    private static long[] readCheckpoint(Path file, Map<Integer, Record> states, Map<Long, Long> macs)
+            throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != CHECKPOINT_MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Неизвестный формат контрольной точки");
+            }
+            long[] start = {in.readInt(), in.readInt()};
+            if (states == null) {
+                return start;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                Record r = readRecord(in);
+                states.put(r.ip, r);
+            }
+            if (macs != null) {
+                int macCount = in.readInt();
+                for (int i = 0; i < macCount; i++) {
+                    macs.put(in.readLong(), in.readLong());
+                }
+            }
+            return start;
+        }
+    }
+
+    private static Record readRecord(ByteBuffer b, int offset) {
+        if (offset + RECORD_HEADER > b.limit()) {
+            return null;
+        }
+        long timestamp = b.getLong(offset);
+        int length = b.get(offset + 23) & 0xFF;
+        int type = b.get(offset + 20);
+        int status = b.get(offset + 21);
+        if (timestamp == 0 || offset + RECORD_HEADER + length > b.limit()
+                || type < 0 || type >= TYPES.length || status < 0 || status >= STATUSES.length) {
+            return null;
+        }
+        String dns = null;
+        if (length > 0) {
+            byte[] bytes = new byte[length];
+            b.get(offset + RECORD_HEADER, bytes);
+            dns = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return new Record(timestamp, b.getInt(offset + 8), b.getLong(offset + 12), TYPES[type], STATUSES[status],
+                (b.get(offset + 22) & FLAG_SNMP) != 0, dns);
+    }
+
+    private static int recordSize(ByteBuffer b, int offset) {
+        return RECORD_HEADER + (b.get(offset + 23) & 0xFF);
+    }
+
+    private static int endOf(ByteBuffer b) {
+        int offset = SEGMENT_HEADER;
+        while (readRecord(b, offset) != null) {
+            offset += recordSize(b, offset);
+        }
+        return offset;
+    }
+
+    /**
+     * Просматривает записи начиная с заданной позиции, пока обработчик возвращает true.
+     *
+     * @return Смещение, на котором остановился просмотр, в последнем просмотренном сегменте.
+     */
+    private int scan(int fromSegment, int fromOffset, Predicate<Record> visitor) throws IOException {
+        int offset = fromOffset;
+        for (int id : segments) {
+            if (id < fromSegment) {
+                continue;
+            }
+            ByteBuffer b = readable(id);
+            offset = id == fromSegment ? fromOffset : SEGMENT_HEADER;
+            Record record;
+            while ((record = readRecord(b, offset)) != null) {
+                if (!visitor.test(record)) {
+                    return offset;
+                }
+                offset += recordSize(b, offset);
+            }
+        }
+        return offset;
+    }
+
+    private ByteBuffer readable(int id) throws IOException {
+        if (id == segment && buffer != null) {
+            return buffer.duplicate().limit(position);
+        }
+        try (FileChannel ch = FileChannel.open(segmentPath(id), StandardOpenOption.READ)) {
+            return ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        } catch (NoSuchFileException e) {
+            // Сегмент удалил пишущий процесс после открытия журнала только для чтения
+            return ByteBuffer.allocate(0);
+        }
+    }
+
+    private long[] startBefore(long time) throws IOException {
+        Map.Entry<Long, Checkpoint> checkpoint = checkpoints.floorEntry(time);
+        if (checkpoint == null) {
+            return new long[]{segments.isEmpty() ? 1 : segments.get(0), SEGMENT_HEADER};
+        }
+        return readCheckpoint(checkpoint.getValue().file, null, null);
+    }
+
+    /**
+     * Возвращает состояние устройства на момент времени.
+     *
+     * @param ipAddress IPv4-адрес в виде int.
+     * @param time      Момент времени в миллисекундах.
+     * @return Последняя запись об устройстве не позже момента или null, если устройство ещё не встречалось.
+     * @throws IOException Если журнал не удалось прочитать.
+     */
+    public synchronized Record stateAt(int ipAddress, long time) throws IOException {
+        Map.Entry<Long, Checkpoint> checkpoint = checkpoints.floorEntry(time);
+        Record[] state = {null};
+        int fromSegment = segments.isEmpty() ? 1 : segments.get(0);
+        int fromOffset = SEGMENT_HEADER;
+        if (checkpoint != null) {
+            Map<Integer, Record> states = new HashMap<>();
+            long[] start = readCheckpoint(checkpoint.getValue().file, states, null);
+            state[0] = states.get(ipAddress);
+            fromSegment = (int) start[0];
+            fromOffset = (int) start[1];
+        }
+        scan(fromSegment, fromOffset, record -> {
+            if (record.timestamp > time) {
+                return false;
+            }
+            if (record.ip == ipAddress) {
+                state[0] = record;
+            }
+            return true;
+        });
+        return state[0];
+    }
+
+    /**
+     * Возвращает записи об устройстве за интервал времени.
+     *
+     * @param ipAddress IPv4-адрес в виде int.
+     * @param from      Начало интервала в миллисекундах.
+     * @param to        Конец интервала в миллисекундах (включительно).
+     * @return Записи по возрастанию времени.
+     * @throws IOException Если журнал не удалось прочитать.
+     */
+    public synchronized List<Record> timeline(int ipAddress, long from, long to) throws IOException {
+        List<Record> result = new ArrayList<>();
+        long[] start = startBefore(from);
+        scan((int) start[0], (int) start[1], record -> {
+            if (record.timestamp > to) {
+                return false;
+            }
+            if (record.ip == ipAddress && record.timestamp >= from) {
+                result.add(record);
+            }
+            return true;
+        });
+        return result;
+    }
+
+    /**
+     * Возвращает время первого появления MAC-адреса.
+     *
+     * @param mac MAC-адрес в виде 48-битного числа.
+     * @return Время в миллисекундах или -1, если адрес не встречался.
+     */
+    public synchronized long firstSeen(long mac) {
+        return firstSeen.getOrDefault(mac, -1L);
+    }
+
+    /**
+     * Возвращает текущее состояние всех устройств журнала.
+     *
+     * @return Последние записи об устройствах в произвольном порядке.
+     */
+    public synchronized List<Record> getCurrentStates() {
+        return new ArrayList<>(current.values());
+    }
+
+    /**
+     * Дописывает записи из очереди, сохраняет контрольную точку, закрывает текущий сегмент
+     * и снимает блокировку каталога.
+     *
+     * @throws IOException Если контрольную точку не удалось записать.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        if (readOnly) {
+            return;
+        }
+        boolean interrupted = false;
+        while (true) {
+            try {
+                pending.put(END);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        while (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            try {
+                if (sinceCheckpoint > 0) {
+                    checkpoint();
+                }
+                buffer.force();
+            } finally {
+                channel.close();
+                channel = null;
+                unlock();
+            }
+        }
+    }
+}
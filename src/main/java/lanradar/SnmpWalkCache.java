@@ -0,0 +1,273 @@
+package lanradar;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.VariableBinding;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Кэш результатов SNMP Walk по паре (устройство, поддерево).
+ * <p>
+ * Одновременные запросы одного и того же обхода обслуживаются одним обращением к агенту: второй
+ * читатель подключается к уже идущему обходу и получает сначала накопленные значения, затем новые.
+ * Завершённый обход хранится {@code lanradar.snmp.walkCacheTtlSeconds} секунд; при превышении
+ * общего числа хранимых значений ({@code lanradar.snmp.walkCacheMaxBindings}) вытесняются
+ * давно не запрашивавшиеся обходы. Неудачные обходы не кэшируются.
+ */
+public final class SnmpWalkCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(SnmpWalkCache.class);
+    private static final OID ROOT_OID = new OID("1");
+    private static final long DEFAULT_TTL_SECONDS = 300;
+    private static final int DEFAULT_MAX_BINDINGS = 500_000;
+
+    private final long ttlNanos;
+    private final long maxBindings;
+    private final Map<String, Walk> walks = new LinkedHashMap<>(16, 0.75f, true);
+    private final ExecutorService executor =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("snmp-walk-cache-", 0).factory());
+    private long retainedBindings;
+
+    /**
+     * Создаёт кэш.
+     *
+     * @param ttlMillis   Время хранения завершённого обхода в миллисекундах.
+     * @param maxBindings Максимальное общее число хранимых значений.
+     */
+    public SnmpWalkCache(long ttlMillis, long maxBindings) {
+        if (ttlMillis < 0 || maxBindings < 0) {
+            throw new IllegalArgumentException("Параметры кэша не могут быть отрицательными");
+        }
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.maxBindings = maxBindings;
+    }
+
+    /**
+     * Ленивая инициализация общего кэша.
+     */
+    private static final class Holder {
+        static final SnmpWalkCache INSTANCE = new SnmpWalkCache(
+                TimeUnit.SECONDS.toMillis(Long.getLong("lanradar.snmp.walkCacheTtlSeconds", DEFAULT_TTL_SECONDS)),
+                Integer.getInteger("lanradar.snmp.walkCacheMaxBindings", DEFAULT_MAX_BINDINGS));
+    }
+
+    /**
+     * Возвращает общий для приложения кэш.
+     *
+     * @return Кэш обходов.
+     */
+    public static SnmpWalkCache getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Один обход: накопленные значения и признак завершения. Значения только добавляются,
+     * поэтому каждый читатель просто запоминает свою позицию.
+     */
+    private final class Walk {
+        private final String key;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition grown = lock.newCondition();
+        private final List<VariableBinding> bindings = new ArrayList<>();
+        private boolean finished;
+        private IOException failure;
+        private long finishedNanos;
+        /** Число значений, учтённых в {@link #retainedBindings}; защищено монитором кэша. */
+        private long retained;
+
+        Walk(String key) {
+            this.key = key;
+        }
+
+        void add(VariableBinding vb) {
+            lock.lock();
+            try {
+                bindings.add(vb);
+                grown.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void finish(IOException error) {
+            lock.lock();
+            try {
+                finished = true;
+                failure = error;
+                finishedNanos = System.nanoTime();
+                grown.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            onFinished(this, error == null);
+        }
+
+        boolean isFresh(long now) {
+            lock.lock();
+            try {
+                return !finished || (failure == null && now - finishedNanos <= ttlNanos);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        long replay(Consumer<VariableBinding> sink) throws IOException, InterruptedException {
+            int next = 0;
+            while (true) {
+                List<VariableBinding> chunk;
+                boolean done;
+                lock.lock();
+                try {
+                    while (next == bindings.size() && !finished) {
+                        grown.await();
+                    }
+                    chunk = new ArrayList<>(bindings.subList(next, bindings.size()));
+                    done = finished && next + chunk.size() == bindings.size();
+                    if (done && failure != null) {
+                        throw failure;
+                    }
+                } finally {
+                    lock.unlock();
+                }
+                for (VariableBinding vb : chunk) {
+                    sink.accept(vb);
+                }
+                next += chunk.size();
+                if (done) {
+                    return next;
+                }
+            }
+        }
+    }
+
+    /**
+     * Передаёт в приёмник результат обхода поддерева: из кэша, из уже идущего обхода или
+     * запустив новый. Прерывание читателя не останавливает обход, его результат остаётся в кэше.
+     *
+     * @param ipAddress IPv4-адрес.
+     * @param root      Корень поддерева; для "1" используется параллельный обход всей MIB.
+     * @param sink      Приёмник пар OID/значение в порядке возрастания OID.
+     * @return Число переданных пар.
+     * @throws IOException          Если обход завершился ошибкой SNMP.
+     * @throws InterruptedException Если поток прерван во время ожидания значений.
+     */
+    public long walk(String ipAddress, OID root, Consumer<VariableBinding> sink)
+            throws IOException, InterruptedException {
+        String key = ipAddress + "/" + root;
+        Walk walk;
+        boolean start = false;
+        synchronized (this) {
+            walk = walks.get(key);
+            if (walk == null || !walk.isFresh(System.nanoTime())) {
+                if (walk != null) {
+                    remove(walk);
+                }
+                walk = new Walk(key);
+                walks.put(key, walk);
+                start = true;
+            }
+        }
+        if (start) {
+            Walk started = walk;
+            executor.execute(() -> run(ipAddress, root, started));
+        }
+        return walk.replay(sink);
+    }
+
+    private void run(String ipAddress, OID root, Walk walk) {
+        try {
+            if (root.equals(ROOT_OID)) {
+                SNMP.walkParallel(ipAddress, SNMP.getDefaultMaxRepetitions(), walk::add);
+            } else {
+                SNMP.walk(ipAddress, root, SNMP.getDefaultMaxRepetitions(), walk::add);
+            }
+            walk.finish(null);
+        } catch (IOException e) {
+            logger.error("Ошибка SNMP Walk ({}): {}", ipAddress, e.getMessage(), e);
+            walk.finish(e);
+        } catch (InterruptedException e) {
+            walk.finish(new IOException("SNMP Walk прерван", e));
+        } catch (RuntimeException e) {
+            walk.finish(new IOException(e));
+            throw e;
+        }
+    }
+
+    /**
+     * Учитывает завершённый обход и вытесняет давно не запрашивавшиеся, если превышен предел.
+     *
+     * @param walk      Обход.
+     * @param succeeded true, если обход завершился без ошибки.
+     */
+    private synchronized void onFinished(Walk walk, boolean succeeded) {
+        if (walks.get(walk.key) != walk) {
+            return;
+        }
+        if (!succeeded) {
+            walks.remove(walk.key);
+            return;
+        }
+        // После завершения список значений больше не меняется
+        walk.lock.lock();
+        try {
+            walk.retained = walk.bindings.size();
+        } finally {
+            walk.lock.unlock();
+        }
+        retainedBindings += walk.retained;
+        Iterator<Walk> it = walks.values().iterator();
+        while (it.hasNext() && retainedBindings > maxBindings) {
+            Walk candidate = it.next();
+            // Идущие обходы не вытесняются: к ним могут быть подключены читатели
+            if (candidate.retained > 0) {
+                it.remove();
+                retainedBindings -= candidate.retained;
+                candidate.retained = 0;
+            }
+        }
+    }
+
+    private void remove(Walk walk) {
+        walks.remove(walk.key);
+        retainedBindings -= walk.retained;
+        walk.retained = 0;
+    }
+
+    /**
+     * Удаляет из кэша все обходы устройства, чтобы следующий запрос снова обратился к агенту.
+     *
+     * @param ipAddress IPv4-адрес.
+     */
+    public synchronized void invalidate(String ipAddress) {
+        String prefix = ipAddress + "/";
+        List<Walk> stale = new ArrayList<>();
+        for (Walk walk : walks.values()) {
+            if (walk.key.startsWith(prefix)) {
+                stale.add(walk);
+            }
+        }
+        stale.forEach(this::remove);
+    }
+
+    /**
+     * Возвращает общее число значений в завершённых обходах кэша.
+     *
+     * @return Число значений.
+     */
+    public synchronized long getRetainedBindings() {
+        return retainedBindings;
+    }
+}
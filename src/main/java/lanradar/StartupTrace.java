@@ -0,0 +1,37 @@
+package lanradar;
+
+import java.time.Instant;
+
+/**
+ * Отметки времени запуска для воспроизводимого измерения. При {@code -Dlanradar.startup.trace=true} каждая
+ * отметка выводится в stderr строкой «startup: &lt;этап&gt; &lt;мс&gt; ms». Время отсчитывается от момента
+ * {@code lanradar.startup.origin} (мс эпохи, его передаёт скрипт замера), а без него — от старта процесса
+ * по данным ОС, точность которых зависит от системы. Без свойства trace отметки ничего не стоят.
+ */
+public final class StartupTrace {
+
+    private static final boolean ENABLED = Boolean.getBoolean("lanradar.startup.trace");
+    private static final long ORIGIN = ENABLED ? origin() : 0;
+
+    private StartupTrace() {
+    }
+
+    private static long origin() {
+        Long origin = Long.getLong("lanradar.startup.origin");
+        if (origin != null) {
+            return origin;
+        }
+        return ProcessHandle.current().info().startInstant().map(Instant::toEpochMilli).orElse(System.currentTimeMillis());
+    }
+
+    /**
+     * Выводит отметку этапа запуска.
+     *
+     * @param phase Название этапа (без пробелов).
+     */
+    public static void mark(String phase) {
+        if (ENABLED) {
+            System.err.println("startup: " + phase + " " + (System.currentTimeMillis() - ORIGIN) + " ms");
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package lanradar;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * Проверка TCP-соединением с портом. Адрес считается доступным и при успешном соединении, и при отказе
+ * (RST): отказ отправляет сам узел. Подходит для узлов, которые не отвечают на ICMP, но держат открытыми
+ * типовые порты (445, 139 у Windows, 22, 80 у серверов и сетевого оборудования).
+ */
+public final class TcpConnectProbe implements LivenessProbe {
+
+    private final int port;
+
+    /**
+     * Создаёт проверку порта.
+     *
+     * @param port Номер TCP-порта.
+     */
+    public TcpConnectProbe(int port) {
+        if (port < 1 || port > 65535) {
+            throw new IllegalArgumentException("Некорректный TCP-порт: " + port);
+        }
+        this.port = port;
+    }
+
+    @Override
+    public String getName() {
+        return "tcp/" + port;
+    }
+
+    @Override
+    public boolean isAlive(InetAddress address, int timeoutMillis) throws InterruptedException {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(address, port), timeoutMillis);
+            return true;
+        } catch (ConnectException e) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedException();
+            }
+            // «Connection refused» — ответ узла; «No route to host» и подобные — нет
+            return e.getMessage() != null && e.getMessage().contains("refused");
+        } catch (IOException e) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedException();
+            }
+            return false;
+        }
+    }
+}
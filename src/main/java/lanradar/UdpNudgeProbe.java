@@ -0,0 +1,53 @@
+package lanradar;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.PortUnreachableException;
+
+/**
+ * Проверка однобайтовой UDP-датаграммой на обычно закрытый порт. Узел без межсетевого экрана отвечает
+ * ICMP «port unreachable», который на соединённом сокете приходит как {@link PortUnreachableException};
+ * любой ответ датаграммой также означает доступность.
+ */
+public final class UdpNudgeProbe implements LivenessProbe {
+
+    private final int port;
+
+    /**
+     * Создаёт проверку порта.
+     *
+     * @param port Номер UDP-порта.
+     */
+    public UdpNudgeProbe(int port) {
+        if (port < 1 || port > 65535) {
+            throw new IllegalArgumentException("Некорректный UDP-порт: " + port);
+        }
+        this.port = port;
+    }
+
+    @Override
+    public String getName() {
+        return "udp/" + port;
+    }
+
+    @Override
+    public boolean isAlive(InetAddress address, int timeoutMillis) throws InterruptedException {
+        try (DatagramSocket socket = new DatagramSocket()) {
+            socket.connect(address, port);
+            socket.setSoTimeout(timeoutMillis);
+            // Пустая датаграмма ICMP-ответа не вызывает, поэтому отправляется один байт
+            socket.send(new DatagramPacket(new byte[1], 1));
+            socket.receive(new DatagramPacket(new byte[1], 1));
+            return true;
+        } catch (PortUnreachableException e) {
+            return true;
+        } catch (IOException e) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedException();
+            }
+            return false;
+        }
+    }
+}
@@ -24,35 +24,9 @@ public class UtilityNetwork {
     public static List<String> calculateHostRange(String subnet) {
         List<String> result = new ArrayList<>();
         try {
-            if (!subnet.matches("^\\d{1,3}(\\.\\d{1,3}){3}/\\d{1,2}$")) {
-                throw new IllegalArgumentException("Некорректный формат подсети");
-            }
-            String[] parts = subnet.split("/");
-            String ipAddress = parts[0];
-            int prefixLength = Integer.parseInt(parts[1]);
-
-            InetAddress inetAddress = InetAddress.getByName(ipAddress);
-            byte[] ipAddressBytes = inetAddress.getAddress();
-
-            for (int i = prefixLength; i < ipAddressBytes.length * 8; i++) {
-                int byteIndex = i / 8;
-                int bitIndex = 7 - (i % 8);
-                ipAddressBytes[byteIndex] &= ~(1 << bitIndex);
-            }
-            ipAddressBytes[ipAddressBytes.length - 1]++;
-            InetAddress minHost = InetAddress.getByAddress(ipAddressBytes);
-
-            int hostBits = 32 - prefixLength;
-            for (int i = 0; i < hostBits; i++) {
-                int byteIndex = (31 - i) / 8;
-                int bitIndex = 7 - ((31 - i) % 8);
-                ipAddressBytes[byteIndex] |= (1 << bitIndex);
-            }
-            ipAddressBytes[ipAddressBytes.length - 1]--;
-            InetAddress maxHost = InetAddress.getByAddress(ipAddressBytes);
-
-            result.add(minHost.getHostAddress());
-            result.add(maxHost.getHostAddress());
+            Ipv4Range range = Ipv4Range.fromCidr(subnet);
+            result.add(formatIpv4(range.first()));
+            result.add(formatIpv4(range.last()));
         } catch (Exception e) {
             logger.error("Ошибка при вычислении диапазона ({}): {}", subnet, e.getMessage(), e);
         }
@@ -80,6 +54,115 @@ public class UtilityNetwork {
         }
     }
 
+    /**
+     * Преобразует IPv4-адрес в точечной записи в число без создания промежуточных объектов.
+     *
+     * @param ipAddress IPv4-адрес (например, "192.168.0.1").
+     * @return Адрес как беззнаковое 32-битное значение в long или -1, если строка некорректна.
+     */
+    public static long parseIpv4(String ipAddress) {
+        if (ipAddress == null) {
+            return -1;
+        }
+        long result = 0;
+        int octet = -1;
+        int dots = 0;
+        for (int i = 0; i < ipAddress.length(); i++) {
+            char c = ipAddress.charAt(i);
+            if (c == '.') {
+                if (octet < 0 || ++dots > 3) {
+                    return -1;
+                }
+                result = (result << 8) | octet;
+                octet = -1;
+            } else if (c >= '0' && c <= '9') {
+                octet = (octet < 0 ? 0 : octet * 10) + (c - '0');
+                if (octet > 255) {
+                    return -1;
+                }
+            } else {
+                return -1;
+            }
+        }
+        if (octet < 0 || dots != 3) {
+            return -1;
+        }
+        return (result << 8) | octet;
+    }
+
+    /**
+     * Преобразует IPv4-адрес из числа в точечную запись.
+     *
+     * @param ipAddress IPv4-адрес в виде int.
+     * @return Строка вида "192.168.0.1".
+     */
+    public static String formatIpv4(int ipAddress) {
+        return (ipAddress >>> 24) + "." + ((ipAddress >>> 16) & 0xFF) + "."
+                + ((ipAddress >>> 8) & 0xFF) + "." + (ipAddress & 0xFF);
+    }
+
+    /**
+     * Создаёт InetAddress из IPv4-адреса в виде числа без обращения к DNS.
+     *
+     * @param ipAddress IPv4-адрес в виде int.
+     * @return Адрес.
+     */
+    public static InetAddress toInetAddress(int ipAddress) {
+        try {
+            return InetAddress.getByAddress(new byte[]{
+                    (byte) (ipAddress >>> 24), (byte) (ipAddress >>> 16), (byte) (ipAddress >>> 8), (byte) ipAddress});
+        } catch (UnknownHostException e) {
+            // Для массива из 4 байт не выбрасывается
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Преобразует MAC-адрес в 48-битное число без создания промежуточных строк.
+     * Допускаются разделители ':', '-' и '.' в любом регистре.
+     *
+     * @param macAddress MAC-адрес (например, "AA-BB-CC-DD-EE-FF").
+     * @return MAC-адрес в виде числа или -1, если строка некорректна.
+     */
+    public static long parseMac(String macAddress) {
+        if (macAddress == null) {
+            return -1;
+        }
+        long value = 0;
+        int digits = 0;
+        for (int i = 0; i < macAddress.length(); i++) {
+            char c = macAddress.charAt(i);
+            if (c == ':' || c == '-' || c == '.') {
+                continue;
+            }
+            int digit = Character.digit(c, 16);
+            if (digit < 0 || ++digits > 12) {
+                return -1;
+            }
+            value = (value << 4) | digit;
+        }
+        return digits == 12 ? value : -1;
+    }
+
+    /**
+     * Преобразует MAC-адрес из числа в строку в формате приложения ("AA-BB-CC-DD-EE-FF").
+     *
+     * @param macAddress MAC-адрес в виде 48-битного числа.
+     * @return Строковое представление MAC-адреса.
+     */
+    public static String formatMac(long macAddress) {
+        char[] chars = new char[17];
+        for (int i = 0; i < 6; i++) {
+            int b = (int) (macAddress >>> (40 - 8 * i)) & 0xFF;
+            chars[i * 3] = Character.toUpperCase(Character.forDigit(b >>> 4, 16));
+            chars[i * 3 + 1] = Character.toUpperCase(Character.forDigit(b & 0xF, 16));
+            if (i < 5) {
+                chars[i * 3 + 2] = '-';
+            }
+        }
+        return new String(chars);
+    }
+
     /**
      * Возвращает список подсетей (ip/mask) для всех активных сетевых интерфейсов.
      *
@@ -0,0 +1,98 @@
+package lanradar;
+
+import javafx.application.Platform;
+import javafx.scene.control.TextArea;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Буфер строк между потоком SNMP Walk и текстовым полем окна результатов.
+ * <p>
+ * Строки дописываются в поле порциями: пока предыдущая порция не выведена, новая не планируется,
+ * поэтому на поток JavaFX приходится не более одной задачи. Размер буфера ограничен: если интерфейс
+ * не успевает выводить текст, поток обхода ждёт, а не накапливает ответы агента в памяти.
+ */
+public class WalkTextBuffer {
+
+    private final TextArea target;
+    private final int maxPendingChars;
+    private final StringBuilder pending = new StringBuilder();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition drained = lock.newCondition();
+    private boolean flushScheduled;
+    private boolean closed;
+
+    /**
+     * Создаёт буфер для текстового поля.
+     *
+     * @param target          Текстовое поле.
+     * @param maxPendingChars Максимальный размер невыведенного текста в символах.
+     */
+    public WalkTextBuffer(TextArea target, int maxPendingChars) {
+        if (maxPendingChars < 1) {
+            throw new IllegalArgumentException("Размер буфера должен быть положительным: " + maxPendingChars);
+        }
+        this.target = target;
+        this.maxPendingChars = maxPendingChars;
+    }
+
+    /**
+     * Добавляет строку и планирует её вывод. Если буфер заполнен, ждёт, пока интерфейс его освободит.
+     *
+     * @param line Строка без перевода строки.
+     * @throws InterruptedException Если поток прерван во время ожидания.
+     */
+    public void appendLine(String line) throws InterruptedException {
+        lock.lock();
+        try {
+            while (pending.length() >= maxPendingChars && !closed) {
+                drained.await();
+            }
+            if (closed) {
+                return;
+            }
+            pending.append(line).append('\n');
+            if (!flushScheduled) {
+                flushScheduled = true;
+                Platform.runLater(this::flush);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Отключает буфер от текстового поля: невыведенный текст отбрасывается, новые строки игнорируются.
+     */
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            pending.setLength(0);
+            drained.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Выводит накопленный текст. Вызывается в потоке JavaFX.
+     */
+    private void flush() {
+        String chunk;
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            chunk = pending.toString();
+            pending.setLength(0);
+            flushScheduled = false;
+            drained.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        target.appendText(chunk);
+    }
+}